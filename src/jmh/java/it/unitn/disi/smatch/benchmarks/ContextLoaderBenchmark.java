@@ -0,0 +1,107 @@
+package it.unitn.disi.smatch.benchmarks;
+
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.loaders.context.BinaryContextLoader;
+import it.unitn.disi.smatch.loaders.context.CTXMLContextLoader;
+import it.unitn.disi.smatch.loaders.context.IContextLoader;
+import it.unitn.disi.smatch.loaders.context.MappedContextLoader;
+import it.unitn.disi.smatch.loaders.context.SimpleXMLContextLoader;
+import it.unitn.disi.smatch.loaders.context.SimpleXMLDeDupContextLoader;
+import it.unitn.disi.smatch.loaders.context.SimpleXMLStAXContextLoader;
+import it.unitn.disi.smatch.renderers.context.BinaryContextRenderer;
+import it.unitn.disi.smatch.renderers.context.MappedContextRenderer;
+import it.unitn.disi.smatch.renderers.context.SimpleXMLContextRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures context loading throughput. The context is generated and rendered once per trial in the format
+ * of the loader. Run with -prof gc to see allocation rates.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextLoaderBenchmark {
+
+    @Param({"SimpleXML", "SimpleXMLStAX", "SimpleXMLDeDup", "CTXML", "Binary", "Mapped"})
+    public String format;
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"8"})
+    public int fanOut;
+
+    @Param({"3"})
+    public int tokens;
+
+    @Param({"false"})
+    public boolean uniqueStrings;
+
+    private IContextLoader loader;
+    private String location;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        IContext context = SyntheticData.createContext(depth, fanOut, tokens, 42);
+        switch (format) {
+            case "SimpleXML":
+                loader = new SimpleXMLContextLoader(uniqueStrings, SyntheticData.ORACLE);
+                location = renderSimpleXML(context);
+                break;
+            case "SimpleXMLStAX":
+                loader = new SimpleXMLStAXContextLoader(uniqueStrings, SyntheticData.ORACLE);
+                location = renderSimpleXML(context);
+                break;
+            case "SimpleXMLDeDup":
+                loader = new SimpleXMLDeDupContextLoader(uniqueStrings, SyntheticData.ORACLE);
+                location = renderSimpleXML(context);
+                break;
+            case "CTXML":
+                loader = new CTXMLContextLoader(uniqueStrings, SyntheticData.ORACLE);
+                location = SyntheticData.createTempFile(".xml");
+                SyntheticData.writeCTXML(context, location);
+                break;
+            case "Binary":
+                loader = new BinaryContextLoader(SyntheticData.ORACLE);
+                location = SyntheticData.createTempFile(".bin");
+                new BinaryContextRenderer().render(context, location);
+                break;
+            case "Mapped":
+                loader = new MappedContextLoader(SyntheticData.ORACLE);
+                location = SyntheticData.createTempFile(".smc");
+                new MappedContextRenderer().render(context, location);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    @Benchmark
+    public IContext load() throws Exception {
+        return loader.loadContext(location);
+    }
+
+    private static String renderSimpleXML(IContext context) throws Exception {
+        String result = SyntheticData.createTempFile(".xml");
+        new SimpleXMLContextRenderer().render(context, result);
+        return result;
+    }
+}
@@ -0,0 +1,86 @@
+package it.unitn.disi.smatch.benchmarks;
+
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.renderers.context.BinaryContextRenderer;
+import it.unitn.disi.smatch.renderers.context.IBaseContextRenderer;
+import it.unitn.disi.smatch.renderers.context.MappedContextRenderer;
+import it.unitn.disi.smatch.renderers.context.OWLContextRenderer;
+import it.unitn.disi.smatch.renderers.context.SimpleXMLContextRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures context rendering throughput. Run with -prof gc to see allocation rates.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextRendererBenchmark {
+
+    @Param({"SimpleXML", "OWL", "Binary", "Mapped"})
+    public String format;
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"8"})
+    public int fanOut;
+
+    @Param({"3"})
+    public int tokens;
+
+    @Param({"false"})
+    public boolean sort;
+
+    private IBaseContextRenderer<IContext, INode> renderer;
+    private IContext context;
+    private String location;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = SyntheticData.createContext(depth, fanOut, tokens, 42);
+        switch (format) {
+            case "SimpleXML":
+                renderer = new SimpleXMLContextRenderer(sort);
+                location = SyntheticData.createTempFile(".xml");
+                break;
+            case "OWL":
+                renderer = new OWLContextRenderer("http://example.org/benchmark", sort);
+                location = SyntheticData.createTempFile(".owl");
+                break;
+            case "Binary":
+                renderer = new BinaryContextRenderer();
+                location = SyntheticData.createTempFile(".bin");
+                break;
+            case "Mapped":
+                renderer = new MappedContextRenderer();
+                location = SyntheticData.createTempFile(".smc");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    @Benchmark
+    public void render() throws Exception {
+        renderer.render(context, location);
+    }
+}
@@ -0,0 +1,84 @@
+package it.unitn.disi.smatch.benchmarks;
+
+import it.unitn.disi.smatch.data.mappings.IContextMapping;
+import it.unitn.disi.smatch.data.mappings.IMappingFactory;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.loaders.mapping.IMappingLinkHandler;
+import it.unitn.disi.smatch.loaders.mapping.SimpleXMLMappingLoader;
+import it.unitn.disi.smatch.renderers.mapping.SimpleXMLMappingRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping loading throughput, both into a mapping and streaming links to a handler.
+ * Run with -prof gc to see allocation rates.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingLoaderBenchmark {
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"8"})
+    public int fanOut;
+
+    @Param({"1.0"})
+    public double density;
+
+    @Param({"it.unitn.disi.smatch.data.mappings.HashMapping"})
+    public String mappingFactory;
+
+    private IContext source;
+    private IContext target;
+    private SimpleXMLMappingLoader loader;
+    private String location;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        IMappingFactory factory = (IMappingFactory) Class.forName(mappingFactory).newInstance();
+        source = SyntheticData.createContext(depth, fanOut, 0, 1);
+        target = SyntheticData.createContext(depth, fanOut, 0, 2);
+        IContextMapping<INode> mapping = SyntheticData.createMapping(factory, source, target, density, 3);
+        location = SyntheticData.createTempFile(".xml");
+        new SimpleXMLMappingRenderer().render(mapping, location);
+        loader = new SimpleXMLMappingLoader(factory);
+    }
+
+    @Benchmark
+    public IContextMapping<INode> load() throws Exception {
+        return loader.loadMapping(source, target, location);
+    }
+
+    @Benchmark
+    public void stream(final Blackhole blackhole) throws Exception {
+        loader.stream(location, new IMappingLinkHandler() {
+            @Override
+            public void handleLink(String sourceId, String targetId, char relation) {
+                blackhole.consume(sourceId);
+                blackhole.consume(targetId);
+                blackhole.consume(relation);
+            }
+        });
+    }
+}
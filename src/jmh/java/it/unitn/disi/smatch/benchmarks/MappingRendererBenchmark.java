@@ -0,0 +1,82 @@
+package it.unitn.disi.smatch.benchmarks;
+
+import it.unitn.disi.smatch.data.mappings.IContextMapping;
+import it.unitn.disi.smatch.data.mappings.IMappingFactory;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.renderers.mapping.AlignAPIMappingRenderer;
+import it.unitn.disi.smatch.renderers.mapping.IMappingRenderer;
+import it.unitn.disi.smatch.renderers.mapping.SimpleXMLMappingRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping rendering throughput. Run with -prof gc to see allocation rates.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingRendererBenchmark {
+
+    @Param({"SimpleXML", "AlignAPI"})
+    public String format;
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"8"})
+    public int fanOut;
+
+    @Param({"1.0"})
+    public double density;
+
+    @Param({"it.unitn.disi.smatch.data.mappings.HashMapping"})
+    public String mappingFactory;
+
+    private IMappingRenderer renderer;
+    private IContextMapping<INode> mapping;
+    private String location;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        IMappingFactory factory = (IMappingFactory) Class.forName(mappingFactory).newInstance();
+        IContext source = SyntheticData.createContext(depth, fanOut, 0, 1);
+        IContext target = SyntheticData.createContext(depth, fanOut, 0, 2);
+        mapping = SyntheticData.createMapping(factory, source, target, density, 3);
+        switch (format) {
+            case "SimpleXML":
+                renderer = new SimpleXMLMappingRenderer();
+                location = SyntheticData.createTempFile(".xml");
+                break;
+            case "AlignAPI":
+                renderer = new AlignAPIMappingRenderer("http://example.org/source", "http://example.org/target",
+                        "source.owl", "target.owl");
+                location = SyntheticData.createTempFile(".rdf");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    @Benchmark
+    public void render() throws Exception {
+        renderer.render(mapping, location);
+    }
+}
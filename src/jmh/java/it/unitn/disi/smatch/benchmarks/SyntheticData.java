@@ -0,0 +1,241 @@
+package it.unitn.disi.smatch.benchmarks;
+
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.ling.ISense;
+import it.unitn.disi.smatch.data.mappings.IContextMapping;
+import it.unitn.disi.smatch.data.mappings.IMappingElement;
+import it.unitn.disi.smatch.data.mappings.IMappingFactory;
+import it.unitn.disi.smatch.data.trees.Context;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.data.trees.INodeData;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic contexts and mappings for benchmarks. Generation is deterministic for a given seed.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public final class SyntheticData {
+
+    // vocabulary size for names, tokens and lemmas, small enough to repeat like in real classifications
+    private static final int VOCABULARY = 500;
+    private static final int SENSES = 10000;
+
+    /**
+     * Linguistic oracle which creates senses with given ids only. Senses are dynamic proxies, so that
+     * benchmarks do not depend on a particular oracle implementation.
+     */
+    public static final ILinguisticOracle ORACLE = (ILinguisticOracle) Proxy.newProxyInstance(
+            SyntheticData.class.getClassLoader(), new Class<?>[]{ILinguisticOracle.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("createSense".equals(method.getName())) {
+                        return createSense((String) args[0]);
+                    }
+                    return objectMethod(proxy, method, args);
+                }
+            });
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Creates a context of a complete tree.
+     *
+     * @param depth  tree depth, 0 for root only
+     * @param fanOut children per node
+     * @param tokens concepts per node label
+     * @param seed   random seed
+     * @return context
+     */
+    public static IContext createContext(int depth, int fanOut, int tokens, long seed) {
+        Random random = new Random(seed);
+        IContext result = new Context();
+        INode root = result.createRoot("Top");
+        int[] id = {0};
+        fill(root, depth, fanOut, tokens, random, id);
+        return result;
+    }
+
+    private static void fill(INode node, int depth, int fanOut, int tokens, Random random, int[] id) {
+        INodeData nodeData = node.nodeData();
+        nodeData.setId("n" + id[0]++);
+        if (0 < id[0] - 1) {
+            nodeData.setName(word(random) + " " + word(random));
+        }
+        StringBuilder formula = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            IAtomicConceptOfLabel acol = nodeData.createConcept();
+            acol.setId(i);
+            String word = word(random);
+            acol.setToken(word);
+            acol.setLemma(word);
+            int senses = random.nextInt(4);
+            for (int j = 0; j < senses; j++) {
+                acol.getSenses().add(createSense("n#" + random.nextInt(SENSES)));
+            }
+            nodeData.getConcepts().add(acol);
+            if (0 < i) {
+                formula.append(" & ");
+            }
+            formula.append(nodeData.getId()).append('.').append(i);
+        }
+        if (0 < tokens) {
+            nodeData.setLabelFormula(formula.toString());
+            nodeData.setNodeFormula(formula.toString());
+            nodeData.setIsPreprocessed(true);
+        }
+        if (0 < depth) {
+            for (int i = 0; i < fanOut; i++) {
+                fill(node.createChild(), depth - 1, fanOut, tokens, random, id);
+            }
+        }
+    }
+
+    /**
+     * Creates a mapping between source and target with about density * source node count links
+     * between random nodes.
+     *
+     * @param factory mapping factory
+     * @param source  source context
+     * @param target  target context
+     * @param density links per source node
+     * @param seed    random seed
+     * @return mapping
+     */
+    public static IContextMapping<INode> createMapping(IMappingFactory factory, IContext source, IContext target,
+                                                       double density, long seed) {
+        Random random = new Random(seed);
+        List<INode> sourceNodes = nodes(source);
+        List<INode> targetNodes = nodes(target);
+        IContextMapping<INode> result = factory.getContextMappingInstance(source, target);
+        long links = Math.round(density * sourceNodes.size());
+        final char[] relations = {IMappingElement.EQUIVALENCE, IMappingElement.LESS_GENERAL,
+                IMappingElement.MORE_GENERAL, IMappingElement.DISJOINT};
+        for (long i = 0; i < links; i++) {
+            INode s = sourceNodes.get(random.nextInt(sourceNodes.size()));
+            INode t = targetNodes.get(random.nextInt(targetNodes.size()));
+            result.setRelation(s, t, relations[random.nextInt(relations.length)]);
+        }
+        result.setSimilarity(random.nextDouble());
+        return result;
+    }
+
+    /**
+     * Writes the context in the CTXML format read by CTXMLContextLoader.
+     *
+     * @param context  context
+     * @param location output file
+     * @throws IOException IOException
+     */
+    public static void writeCTXML(IContext context, String location) throws IOException {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(location), "UTF-8"));
+        try {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<schema>\n");
+            for (Iterator<INode> i = context.nodeIterator(); i.hasNext(); ) {
+                INode node = i.next();
+                INodeData nodeData = node.nodeData();
+                out.write("<complexType-Concept name=\"" + ctxmlName(nodeData) + "\">\n");
+                if (node.hasParent()) {
+                    out.write("<complexContent><extension base=\"" + ctxmlName(node.getParent().nodeData())
+                            + "\"/></complexContent>\n");
+                }
+                out.write("<annotation><appinfo>\n");
+                if (null != nodeData.getLabelFormula()) {
+                    out.write("<cLabFormula>" + nodeData.getLabelFormula().replace("&", "&amp;") + "</cLabFormula>\n");
+                }
+                if (null != nodeData.getNodeFormula()) {
+                    out.write("<logicalFormulaRepresentation>" + nodeData.getNodeFormula().replace("&", "&amp;")
+                            + "</logicalFormulaRepresentation>\n");
+                }
+                out.write("<senses>\n");
+                for (IAtomicConceptOfLabel acol : nodeData.getConcepts()) {
+                    out.write("<sense><idToken>" + acol.getId() + "</idToken><token>" + acol.getToken()
+                            + "</token><lemma>" + acol.getLemma() + "</lemma><wSenses>");
+                    for (ISense sense : acol.getSenses()) {
+                        out.write(sense.getId());
+                        out.write(' ');
+                    }
+                    out.write("</wSenses></sense>\n");
+                }
+                out.write("</senses>\n");
+                out.write("</appinfo></annotation>\n");
+                out.write("</complexType-Concept>\n");
+            }
+            out.write("</schema>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Creates a temporary file deleted on exit.
+     *
+     * @param suffix file suffix
+     * @return file location
+     * @throws IOException IOException
+     */
+    public static String createTempFile(String suffix) throws IOException {
+        File file = File.createTempFile("s-match-bench", suffix);
+        file.deleteOnExit();
+        return file.getAbsolutePath();
+    }
+
+    private static String ctxmlName(INodeData nodeData) {
+        return nodeData.getName() + "$" + nodeData.getId();
+    }
+
+    private static List<INode> nodes(IContext context) {
+        List<INode> result = new ArrayList<>();
+        for (Iterator<INode> i = context.nodeIterator(); i.hasNext(); ) {
+            result.add(i.next());
+        }
+        return result;
+    }
+
+    private static String word(Random random) {
+        return "w" + random.nextInt(VOCABULARY);
+    }
+
+    private static ISense createSense(final String id) {
+        return (ISense) Proxy.newProxyInstance(SyntheticData.class.getClassLoader(), new Class<?>[]{ISense.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getId".equals(method.getName())) {
+                            return id;
+                        }
+                        return objectMethod(proxy, method, args);
+                    }
+                });
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return proxy.getClass().getName();
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
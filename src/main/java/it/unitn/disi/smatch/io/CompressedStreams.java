@@ -0,0 +1,193 @@
+package it.unitn.disi.smatch.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opens files for loaders and renderers with transparent compression. Input compression is detected
+ * by magic bytes, so compressed files are read whatever their names are. Output is compressed
+ * if the file name ends with {@link #GZIP_EXTENSION}.
+ * <p/>
+ * Buffer size defaults to 64KB and can be changed with the smatch.io.bufferSize system property.
+ * Output is compressed in parallel by {@link ParallelGZIPOutputStream} with as many threads as there are
+ * processors, the amount of threads can be changed with the smatch.io.compressionThreads system property,
+ * 1 compresses in the writing thread. The threads are daemons shared by all streams, so that writing many
+ * files in parallel does not multiply them.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public final class CompressedStreams {
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    public static final int DEFAULT_BUFFER_SIZE = Integer.getInteger("smatch.io.bufferSize", 64 * 1024);
+
+    public static final int COMPRESSION_THREADS = Integer.getInteger("smatch.io.compressionThreads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final int GZIP_MAGIC = 0x1F8B;
+    private static final int ZSTD_MAGIC = 0x28B52FFD;
+
+    private CompressedStreams() {
+    }
+
+    // compression threads shared by all streams, created on first use
+    private static class CompressionExecutor {
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(COMPRESSION_THREADS,
+                ParallelGZIPOutputStream.DAEMON_THREADS);
+    }
+
+    /**
+     * Opens the file for reading, decompressing it if needed.
+     *
+     * @param location   file
+     * @param bufferSize buffer size
+     * @return buffered input stream
+     * @throws IOException IOException
+     */
+    public static InputStream openInputStream(String location, int bufferSize) throws IOException {
+        InputStream file = new FileInputStream(location);
+        try {
+            BufferedInputStream in = new BufferedInputStream(file, bufferSize);
+            in.mark(4);
+            int magic = 0;
+            int count = 0;
+            int b;
+            while (count < 4 && -1 != (b = in.read())) {
+                magic = (magic << 8) | b;
+                count++;
+            }
+            in.reset();
+            if (2 <= count && GZIP_MAGIC == magic >>> (8 * (count - 2))) {
+                return new BufferedInputStream(new GZIPInputStream(in, bufferSize), bufferSize);
+            }
+            if (4 == count && ZSTD_MAGIC == magic) {
+                throw new IOException("Zstandard compressed files are not supported: " + location);
+            }
+            return in;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public static InputStream openInputStream(String location) throws IOException {
+        return openInputStream(location, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the file for writing, compressing it if the name ends with {@link #GZIP_EXTENSION}.
+     *
+     * @param location   file
+     * @param bufferSize buffer size
+     * @return buffered output stream
+     * @throws IOException IOException
+     */
+    public static OutputStream openOutputStream(String location, int bufferSize) throws IOException {
+        OutputStream file = new FileOutputStream(location);
+        try {
+            if (isCompressed(location)) {
+                if (1 < COMPRESSION_THREADS) {
+                    return new ParallelGZIPOutputStream(new BufferedOutputStream(file, bufferSize), CompressionExecutor.INSTANCE,
+                            COMPRESSION_THREADS, ParallelGZIPOutputStream.DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+                }
+                // buffer in front, so that the deflater receives large chunks
+                return new BufferedOutputStream(new GZIPOutputStream(file, bufferSize), bufferSize);
+            }
+            return new BufferedOutputStream(file, bufferSize);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public static OutputStream openOutputStream(String location) throws IOException {
+        return openOutputStream(location, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the file for reading UTF-8 text, decompressing it if needed.
+     *
+     * @param location   file
+     * @param bufferSize buffer size
+     * @return reader
+     * @throws IOException IOException
+     */
+    public static BufferedReader openReader(String location, int bufferSize) throws IOException {
+        InputStream in = openInputStream(location, bufferSize);
+        try {
+            return new BufferedReader(new InputStreamReader(in, ENCODING), bufferSize);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public static BufferedReader openReader(String location) throws IOException {
+        return openReader(location, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the file for writing UTF-8 text, compressing it if the name ends with {@link #GZIP_EXTENSION}.
+     *
+     * @param location   file
+     * @param bufferSize buffer size
+     * @return writer
+     * @throws IOException IOException
+     */
+    public static BufferedWriter openWriter(String location, int bufferSize) throws IOException {
+        OutputStream out = openOutputStream(location, bufferSize);
+        try {
+            return new BufferedWriter(new OutputStreamWriter(out, ENCODING), bufferSize);
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    public static BufferedWriter openWriter(String location) throws IOException {
+        return openWriter(location, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Checks whether the file is gzip compressed, by its magic bytes.
+     *
+     * @param location file
+     * @return true, if the file is compressed
+     * @throws IOException IOException
+     */
+    public static boolean isCompressedFile(String location) throws IOException {
+        InputStream in = new FileInputStream(location);
+        try {
+            return GZIP_MAGIC == ((in.read() << 8) | in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Checks whether the file written to the location will be compressed.
+     *
+     * @param location file
+     * @return true, if the file will be compressed
+     */
+    public static boolean isCompressed(String location) {
+        return location.toLowerCase().endsWith(GZIP_EXTENSION);
+    }
+}
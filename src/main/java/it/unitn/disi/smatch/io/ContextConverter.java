@@ -0,0 +1,325 @@
+package it.unitn.disi.smatch.io;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.loaders.context.CTXMLContextLoader;
+import it.unitn.disi.smatch.loaders.context.ContextLoaderException;
+import it.unitn.disi.smatch.loaders.context.IAsyncContextLoader;
+import it.unitn.disi.smatch.metrics.IMetricsListener;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
+import it.unitn.disi.smatch.renderers.context.BinaryContextRenderer;
+import it.unitn.disi.smatch.renderers.context.ContextRendererException;
+import it.unitn.disi.smatch.renderers.context.IAsyncContextRenderer;
+import it.unitn.disi.smatch.renderers.context.SimpleXMLContextRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts many context files from one format into another in parallel, loading each context with tasks
+ * created by an async loader and rendering it with tasks created by an async renderer. At most parallelism
+ * contexts are converted at the same time and each context is released as soon as it is rendered,
+ * therefore memory is bounded by the largest contexts being converted, not by the amount of files.
+ * <p/>
+ * Legacy CTXML files are converted with {@link #fromCTXML(IAsyncContextRenderer, int)}, which keeps sense ids
+ * without creating senses, so that no linguistic oracle is needed. CTXML lists concepts with references to
+ * their parents in any order, while the target formats need the tree, therefore each context is still built
+ * in memory before rendering.
+ * <p/>
+ * Throughput is logged after each batch, available through getters and reported per file to the metrics
+ * listener as the convert phase.
+ * <p/>
+ * The converter can be run from the command line:
+ * <pre>
+ * ContextConverter xml|bin output-directory [-threads=N] files...
+ * </pre>
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class ContextConverter {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextConverter.class);
+
+    private final IAsyncContextLoader loader;
+    private final IAsyncContextRenderer renderer;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final Semaphore permits;
+
+    private IMetricsListener metricsListener;
+
+    // statistics of the current batch
+    private final AtomicInteger converted = new AtomicInteger();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Creates a converter with its own fixed thread pool.
+     *
+     * @param loader      loader which creates loading tasks
+     * @param renderer    renderer which creates rendering tasks
+     * @param parallelism how many contexts to convert at the same time
+     */
+    public ContextConverter(IAsyncContextLoader loader, IAsyncContextRenderer renderer, int parallelism) {
+        this(loader, renderer, Executors.newFixedThreadPool(parallelism), true, parallelism);
+    }
+
+    /**
+     * Creates a converter which runs conversions on the given executor. The executor is not shut down.
+     *
+     * @param loader      loader which creates loading tasks
+     * @param renderer    renderer which creates rendering tasks
+     * @param executor    executor to run conversions
+     * @param parallelism how many contexts to convert at the same time
+     */
+    public ContextConverter(IAsyncContextLoader loader, IAsyncContextRenderer renderer, ExecutorService executor, int parallelism) {
+        this(loader, renderer, executor, false, parallelism);
+    }
+
+    private ContextConverter(IAsyncContextLoader loader, IAsyncContextRenderer renderer, ExecutorService executor, boolean ownExecutor, int parallelism) {
+        this.loader = loader;
+        this.renderer = renderer;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.permits = new Semaphore(Parallelism.check(parallelism));
+    }
+
+    /**
+     * Creates a converter of CTXML files, which keeps the senses as ids and does not need an oracle.
+     *
+     * @param renderer    renderer which creates rendering tasks
+     * @param parallelism how many contexts to convert at the same time
+     * @return converter of CTXML files
+     */
+    public static ContextConverter fromCTXML(IAsyncContextRenderer renderer, int parallelism) {
+        CTXMLContextLoader loader = new CTXMLContextLoader(true, null);
+        loader.setLazySenses(true);
+        return new ContextConverter(loader, renderer, parallelism);
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Converts the contexts from the sources into the targets.
+     *
+     * @param sources locations of the contexts to convert
+     * @param targets locations to write the contexts to, in the order of sources, should be distinct
+     * @throws ContextLoaderException   if any of the contexts fails to load
+     * @throws ContextRendererException if any of the contexts fails to render
+     * @throws InterruptedException     if interrupted while waiting, the conversions are cancelled
+     */
+    public void convert(final List<String> sources, final List<String> targets)
+            throws ContextLoaderException, ContextRendererException, InterruptedException {
+        if (sources.size() != targets.size()) {
+            throw new IllegalArgumentException("Sources and targets differ in size: " + sources.size() + " and " + targets.size());
+        }
+        Set<File> distinct = new HashSet<>();
+        for (String target : targets) {
+            if (!distinct.add(canonical(new File(target)))) {
+                throw new IllegalArgumentException("Duplicate target: " + target);
+            }
+        }
+        converted.set(0);
+        nodes.set(0);
+        bytesRead.set(0);
+        bytesWritten.set(0);
+        long start = System.currentTimeMillis();
+
+        List<Future<Void>> futures = new ArrayList<>(sources.size());
+        try {
+            for (int i = 0; i < sources.size(); i++) {
+                final String source = sources.get(i);
+                final String target = targets.get(i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        permits.acquire();
+                        try {
+                            convert(source, target);
+                            return null;
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause();
+                    if (cause instanceof ContextLoaderException) {
+                        throw (ContextLoaderException) cause;
+                    }
+                    if (cause instanceof ContextRendererException) {
+                        throw (ContextRendererException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    throw new ContextRendererException("Error converting " + sources.get(i) + ": " + cause.getMessage(), cause);
+                }
+            }
+
+            if (log.isInfoEnabled()) {
+                long time = Math.max(1, System.currentTimeMillis() - start);
+                log.info("Converted " + converted.get() + " contexts, " + nodes.get() + " nodes, "
+                        + bytesRead.get() + " bytes into " + bytesWritten.get() + " bytes in " + time + "ms ("
+                        + (converted.get() * 1000L / time) + " contexts/s, " + (nodes.get() * 1000 / time) + " nodes/s, "
+                        + (bytesRead.get() * 1000 / time / 1024) + " KB/s)");
+            }
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void convert(String source, String target) throws Exception {
+        PhaseTimer timer = PhaseTimer.start(metricsListener, getClass().getSimpleName(), "convert");
+        AsyncTask<IContext, INode> load = loader.asyncLoad(source);
+        load.run();
+        IContext context = load.get();
+        if (null == context) {
+            // the loading was interrupted
+            throw new InterruptedException();
+        }
+        int nodeCount = context.nodesCount();
+        AsyncTask<Void, INode> render = renderer.asyncRender(context, target);
+        render.run();
+        render.get();
+
+        long read = new File(source).length();
+        converted.incrementAndGet();
+        nodes.addAndGet(nodeCount);
+        bytesRead.addAndGet(read);
+        bytesWritten.addAndGet(new File(target).length());
+        timer.stop(nodeCount, read);
+    }
+
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Returns how many contexts of the current batch are converted.
+     *
+     * @return how many contexts are converted
+     */
+    public int getConverted() {
+        return converted.get();
+    }
+
+    /**
+     * Returns how many nodes of the current batch are converted.
+     *
+     * @return how many nodes are converted
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Shuts down the executor, if it was created by this converter.
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Converts CTXML files into SimpleXML or binary files with the same names in the output directory.
+     *
+     * @param args xml|bin output-directory [-threads=N] files...
+     * @throws Exception Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: ContextConverter xml|bin output-directory [-threads=N] files...");
+            System.exit(1);
+        }
+        IAsyncContextRenderer renderer;
+        String extension;
+        switch (args[0]) {
+            case "xml":
+                renderer = new SimpleXMLContextRenderer();
+                extension = ".xml";
+                break;
+            case "bin":
+                renderer = new BinaryContextRenderer();
+                extension = ".bin";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + args[0]);
+        }
+        File directory = new File(args[1]);
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int first = 2;
+        if (args[first].startsWith("-threads=")) {
+            parallelism = Integer.parseInt(args[first].substring("-threads=".length()));
+            first++;
+        }
+
+        List<String> sources = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        Set<File> distinct = new HashSet<>();
+        for (int i = first; i < args.length; i++) {
+            File source = new File(args[i]);
+            String name = source.getName();
+            int dot = name.lastIndexOf('.');
+            File target = new File(directory, (-1 == dot ? name : name.substring(0, dot)) + extension);
+            File canonicalTarget = target.getCanonicalFile();
+            if (canonicalTarget.equals(source.getCanonicalFile())) {
+                throw new IllegalArgumentException("Target is the same as source: " + source);
+            }
+            if (!distinct.add(canonicalTarget)) {
+                throw new IllegalArgumentException("Duplicate target: " + target + " for " + source);
+            }
+            sources.add(source.getPath());
+            targets.add(target.getPath());
+        }
+
+        ContextConverter converter = fromCTXML(renderer, parallelism);
+        try {
+            converter.convert(sources, targets);
+        } finally {
+            converter.shutdown();
+        }
+    }
+}
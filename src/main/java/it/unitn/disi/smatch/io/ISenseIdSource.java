@@ -0,0 +1,25 @@
+package it.unitn.disi.smatch.io;
+
+/**
+ * Atomic concept of label which gives out the ids of its senses without creating the senses,
+ * for example, because they are created on the first access to them.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface ISenseIdSource {
+
+    /**
+     * Returns the amount of senses without creating them.
+     *
+     * @return the amount of senses
+     */
+    int getSenseCount();
+
+    /**
+     * Returns the id of the sense without creating the senses.
+     *
+     * @param index index of the sense
+     * @return the sense id
+     */
+    String getSenseId(int index);
+}
@@ -0,0 +1,283 @@
+package it.unitn.disi.smatch.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream which compresses blocks of data in parallel, like pigz. Data written to the stream
+ * is cut into blocks, each block is deflated by a worker thread using the tail of the previous block as
+ * a dictionary, and compressed blocks are written in order by the writing thread. The output is a single
+ * standard gzip member.
+ * <p/>
+ * The writing thread computes the checksum and writes compressed blocks, so that serialization,
+ * compression and output run at the same time. Not thread safe.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b,  // magic
+            Deflater.DEFLATED,  // compression method
+            0,                  // flags
+            0, 0, 0, 0,         // modification time
+            0,                  // extra flags
+            (byte) 0xff         // operating system: unknown
+    };
+
+    // compression threads should not keep the application running if the stream is not closed
+    static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread result = factory.newThread(r);
+            result.setDaemon(true);
+            return result;
+        }
+    };
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int level;
+    // how many blocks may be compressed or wait for compression at the same time
+    private final int maxPending;
+
+    private final CRC32 crc = new CRC32();
+    private long size;
+
+    private byte[] block;
+    private int blockLength;
+    private byte[] dictionary;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private boolean closed;
+
+    /**
+     * Creates a stream compressing with as many threads as there are processors.
+     *
+     * @param out output stream
+     * @throws IOException IOException
+     */
+    public ParallelGZIPOutputStream(OutputStream out) throws IOException {
+        this(out, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a stream compressing with its own threads, which are stopped when the stream is closed.
+     *
+     * @param out     output stream
+     * @param threads how many threads compress blocks
+     * @throws IOException IOException
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int threads) throws IOException {
+        this(out, Executors.newFixedThreadPool(checkThreads(threads), DAEMON_THREADS), true, threads,
+                DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a stream compressing blocks on the executor. The executor is not shut down.
+     *
+     * @param out       output stream
+     * @param executor  executor to compress blocks
+     * @param threads   how many blocks to compress at the same time
+     * @param blockSize block size, at least 32KB
+     * @param level     compression level
+     * @throws IOException IOException
+     */
+    public ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, int threads, int blockSize, int level) throws IOException {
+        this(out, executor, false, threads, blockSize, level);
+    }
+
+    private ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, boolean ownExecutor, int threads, int blockSize, int level) throws IOException {
+        checkThreads(threads);
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size should be at least " + DICTIONARY_SIZE + ": " + blockSize);
+        }
+        this.out = out;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.level = level;
+        this.maxPending = 2 * threads;
+        this.block = new byte[blockSize];
+        try {
+            out.write(HEADER);
+        } catch (IOException | RuntimeException e) {
+            if (ownExecutor) {
+                executor.shutdown();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (blockLength == block.length) {
+            submit(false);
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (0 < len) {
+            if (blockLength == block.length) {
+                submit(false);
+            }
+            int length = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, length);
+            blockLength += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    /**
+     * Writes the blocks compressed so far. Data of the current block remains buffered, because
+     * compressing small blocks hurts the compression ratio.
+     *
+     * @throws IOException IOException
+     */
+    @Override
+    public void flush() throws IOException {
+        writeCompleted(false);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submit(true);
+            writeCompleted(true);
+            writeInt((int) crc.getValue());
+            writeInt((int) size);
+            out.flush();
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            if (ownExecutor) {
+                executor.shutdown();
+            }
+            Deflater deflater;
+            while (null != (deflater = deflaters.poll())) {
+                deflater.end();
+            }
+            out.close();
+        }
+    }
+
+    private void submit(final boolean last) throws IOException {
+        crc.update(block, 0, blockLength);
+        size += blockLength;
+
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dict = dictionary;
+        pending.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return deflate(data, length, dict, last);
+            }
+        }));
+
+        if (!last) {
+            dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+            block = new byte[block.length];
+            blockLength = 0;
+            // write finished blocks and wait for the oldest one if too many are queued
+            writeCompleted(false);
+            while (maxPending <= pending.size()) {
+                writeBlock(pending.removeFirst());
+            }
+        }
+    }
+
+    private byte[] deflate(byte[] data, int length, byte[] dict, boolean last) {
+        Deflater deflater = deflaters.poll();
+        if (null == deflater) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            if (null != dict) {
+                deflater.setDictionary(dict);
+            }
+            deflater.setInput(data, 0, length);
+            ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    result.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                // sync flush ends the block on a byte boundary, so that blocks can be concatenated
+                int count;
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    result.write(buffer, 0, count);
+                } while (count == buffer.length);
+            }
+            return result.toByteArray();
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    private void writeCompleted(boolean wait) throws IOException {
+        while (!pending.isEmpty() && (wait || pending.peekFirst().isDone())) {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    private void writeBlock(Future<byte[]> future) throws IOException {
+        try {
+            out.write(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getClass().getSimpleName() + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+        out.write((value >>> 16) & 0xff);
+        out.write((value >>> 24) & 0xff);
+    }
+
+    private static int checkThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count should be positive: " + threads);
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,26 @@
+package it.unitn.disi.smatch.io;
+
+/**
+ * Checks of parallelism settings shared by loaders, renderers and converters.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public final class Parallelism {
+
+    private Parallelism() {
+    }
+
+    /**
+     * Checks that the parallelism is positive.
+     *
+     * @param parallelism how many threads or tasks to run at the same time
+     * @return the parallelism
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public static int check(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive: " + parallelism);
+        }
+        return parallelism;
+    }
+}
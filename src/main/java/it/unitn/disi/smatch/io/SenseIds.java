@@ -0,0 +1,42 @@
+package it.unitn.disi.smatch.io;
+
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+
+/**
+ * Reads sense ids of concepts for rendering. Concepts implementing {@link ISenseIdSource} give out their
+ * sense ids without creating the senses, the senses of other concepts are read as usual.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public final class SenseIds {
+
+    private SenseIds() {
+    }
+
+    /**
+     * Returns the amount of senses of the concept without creating lazy senses.
+     *
+     * @param acol atomic concept of label
+     * @return the amount of senses
+     */
+    public static int getSenseCount(IAtomicConceptOfLabel acol) {
+        if (acol instanceof ISenseIdSource) {
+            return ((ISenseIdSource) acol).getSenseCount();
+        }
+        return acol.getSenses().size();
+    }
+
+    /**
+     * Returns the id of the sense of the concept without creating lazy senses.
+     *
+     * @param acol  atomic concept of label
+     * @param index index of the sense
+     * @return the sense id
+     */
+    public static String getSenseId(IAtomicConceptOfLabel acol, int index) {
+        if (acol instanceof ISenseIdSource) {
+            return ((ISenseIdSource) acol).getSenseId(index);
+        }
+        return acol.getSenses().get(index).getId();
+    }
+}
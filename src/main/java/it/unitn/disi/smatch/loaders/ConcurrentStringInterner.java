@@ -0,0 +1,52 @@
+package it.unitn.disi.smatch.loaders;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free interner based on ConcurrentHashMap. Strings are kept strongly until the interner is discarded.
+ * Optionally bounded: when the limit is reached new strings are returned as is and are not kept.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class ConcurrentStringInterner implements IStringInterner {
+
+    private final ConcurrentHashMap<String, String> strings;
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ConcurrentStringInterner() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSize maximum amount of strings to keep
+     */
+    public ConcurrentStringInterner(int maxSize) {
+        this.maxSize = maxSize;
+        this.strings = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    @Override
+    public String intern(String s) {
+        if (null == s) {
+            return null;
+        }
+        String result = strings.get(s);
+        if (null == result) {
+            if (maxSize <= size.get()) {
+                return s;
+            }
+            result = strings.putIfAbsent(s, s);
+            if (null == result) {
+                size.incrementAndGet();
+                result = s;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
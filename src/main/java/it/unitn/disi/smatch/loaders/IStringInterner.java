@@ -0,0 +1,19 @@
+package it.unitn.disi.smatch.loaders;
+
+/**
+ * Makes equal strings share one instance. Loaders use interners to save memory on repetitive
+ * node names, tokens, lemmas and ids. An interner may be shared by several loaders, including
+ * the ones running in parallel, so implementations should be thread safe.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IStringInterner {
+
+    /**
+     * Returns the canonical instance of the string.
+     *
+     * @param s string, may be null
+     * @return canonical instance equal to s, or s itself
+     */
+    String intern(String s);
+}
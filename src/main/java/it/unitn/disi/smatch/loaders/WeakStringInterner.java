@@ -0,0 +1,57 @@
+package it.unitn.disi.smatch.loaders;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Interner which keeps strings weakly, so that strings no longer used by any context are garbage collected.
+ * The table is split into stripes with separate locks to reduce contention between parallel loaders.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class WeakStringInterner implements IStringInterner {
+
+    private static final int DEFAULT_STRIPES = 16;
+
+    private final Map<String, WeakReference<String>>[] stripes;
+    private final int mask;
+
+    public WeakStringInterner() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes amount of stripes, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public WeakStringInterner(int stripes) {
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        this.stripes = new Map[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new WeakHashMap<>();
+        }
+        this.mask = count - 1;
+    }
+
+    @Override
+    public String intern(String s) {
+        if (null == s) {
+            return null;
+        }
+        int h = s.hashCode();
+        Map<String, WeakReference<String>> stripe = stripes[(h ^ (h >>> 16)) & mask];
+        synchronized (stripe) {
+            WeakReference<String> ref = stripe.get(s);
+            String result = null == ref ? null : ref.get();
+            if (null == result) {
+                stripe.put(s, new WeakReference<>(s));
+                result = s;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package it.unitn.disi.smatch.loaders;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of configured SAX parsers shared by the XML loaders. Creating a parser looks up and loads
+ * the parser classes and allocates its buffers, which costs more than parsing a small file, therefore
+ * loaders take a parser from the pool for each load and return it afterwards.
+ * <p/>
+ * The pool keeps up to smatch.xml.readerPoolSize parsers, twice the amount of processors by default.
+ * When the pool is empty a new parser is created, parsers returned to a full pool are dropped.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public final class XMLReaderPool {
+
+    public static final String DEFAULT_PARSER_NAME = "org.apache.xerces.parsers.SAXParser";
+
+    private static final int BUFFER_SIZE = 8196;
+
+    private static final int POOL_SIZE = Integer.getInteger("smatch.xml.readerPoolSize",
+            2 * Runtime.getRuntime().availableProcessors());
+
+    // resets the handlers of the returned parsers, so that the pool does not keep loaders alive
+    private static final DefaultHandler NO_HANDLER = new DefaultHandler();
+
+    private static final BlockingQueue<XMLReader> readers = new ArrayBlockingQueue<>(Math.max(1, POOL_SIZE));
+
+    private XMLReaderPool() {
+    }
+
+    /**
+     * Takes a parser from the pool or creates a new one.
+     *
+     * @return configured parser
+     * @throws SAXException SAXException
+     */
+    public static XMLReader acquire() throws SAXException {
+        XMLReader result = readers.poll();
+        if (null == result) {
+            result = XMLReaderFactory.createXMLReader(DEFAULT_PARSER_NAME);
+            result.setProperty("http://apache.org/xml/properties/input-buffer-size", BUFFER_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parser to the pool. The parser should not be used after that.
+     *
+     * @param reader parser taken from the pool
+     */
+    public static void release(XMLReader reader) {
+        reader.setContentHandler(NO_HANDLER);
+        reader.setErrorHandler(NO_HANDLER);
+        readers.offer(reader);
+    }
+}
@@ -2,14 +2,20 @@ package it.unitn.disi.smatch.loaders.context;
 
 import it.unitn.disi.smatch.data.trees.IBaseContext;
 import it.unitn.disi.smatch.data.trees.IBaseNode;
+import it.unitn.disi.smatch.io.CompressedStreams;
 import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.loaders.IStringInterner;
 import it.unitn.disi.smatch.loaders.ParseInterruptedException;
+import it.unitn.disi.smatch.loaders.XMLReaderPool;
+import it.unitn.disi.smatch.metrics.IMetricsListener;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
+import it.unitn.disi.smatch.oracles.LinguisticOracleException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.*;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -21,6 +27,16 @@ import java.util.Map;
  * When instantiated as loader, the class uses a copy of itself as a content handler for thread safety.
  * When instantiated as a task (null != this.location), the class uses itself as a content handler,
  * because task is inherently single threaded and single use.
+ * <p/>
+ * Compressed files are decompressed transparently, see {@link CompressedStreams}.
+ * <p/>
+ * Interruption is checked and progress is reported every {@link #ELEMENTS_PER_CHECK} elements, instead of
+ * in every parser callback. Subclasses count loaded nodes with {@link #countNode()}.
+ * <p/>
+ * Parsers are taken from the {@link XMLReaderPool} for each load, instead of being created with each loader.
+ * <p/>
+ * Phases of loading (open, parse, load and the ones added by subclasses) are reported to the metrics
+ * listener, if one is set.
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  */
@@ -29,10 +45,12 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
 
     private static final Logger log = LoggerFactory.getLogger(BaseXMLContextLoader.class);
 
-    private static final String DEFAULT_PARSER_NAME = "org.apache.xerces.parsers.SAXParser";
+    // how many elements are parsed between interruption checks and progress updates
+    protected static final int ELEMENTS_PER_CHECK = 1024;
 
-    protected final XMLReader parser;
     protected final boolean uniqueStrings;
+    // shared interner, if null and uniqueStrings, strings are made unique within one document
+    protected final IStringInterner interner;
 
     // content handler variables
     // variables used in parsing
@@ -41,6 +59,15 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
     // to collect all content in case parser processes element content in several passes
     protected StringBuilder content;
     protected final Map<String, String> unique = new HashMap<>();
+    // elements parsed since the last check
+    private int elementCount;
+    // nodes loaded, reported as progress in batches
+    private long nodeCount;
+
+    protected IMetricsListener metricsListener;
+
+    // parser kept by this loader for subclasses still using getParser()
+    private XMLReader parser;
 
     public BaseXMLContextLoader() {
         this(false);
@@ -51,12 +78,7 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
      */
     public BaseXMLContextLoader(boolean uniqueStrings) {
         this.uniqueStrings = uniqueStrings;
-        try {
-            parser = XMLReaderFactory.createXMLReader(DEFAULT_PARSER_NAME);
-            parser.setProperty("http://apache.org/xml/properties/input-buffer-size", 8196);
-        } catch (SAXException e) {
-            throw new IllegalStateException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
-        }
+        this.interner = null;
     }
 
     /**
@@ -65,12 +87,24 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
     public BaseXMLContextLoader(boolean uniqueStrings, String location) {
         super(location);
         this.uniqueStrings = uniqueStrings;
-        try {
-            parser = XMLReaderFactory.createXMLReader(DEFAULT_PARSER_NAME);
-            parser.setProperty("http://apache.org/xml/properties/input-buffer-size", 8196);
-        } catch (SAXException e) {
-            throw new IllegalStateException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
-        }
+        this.interner = null;
+    }
+
+    /**
+     * @param interner interner to make strings unique, may be shared with other loaders
+     */
+    public BaseXMLContextLoader(IStringInterner interner) {
+        this.uniqueStrings = null != interner;
+        this.interner = interner;
+    }
+
+    /**
+     * @param interner interner to make strings unique, may be shared with other loaders
+     */
+    public BaseXMLContextLoader(IStringInterner interner, String location) {
+        super(location);
+        this.uniqueStrings = null != interner;
+        this.interner = interner;
     }
 
     /**
@@ -83,6 +117,78 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
         return uniqueStrings;
     }
 
+    /**
+     * Returns the interner used to make strings unique, or null, if strings are made unique within one document.
+     *
+     * @return interner or null
+     */
+    public IStringInterner getInterner() {
+        return interner;
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener to report loading phases to.
+     *
+     * @param metricsListener metrics listener, null to stop reporting
+     */
+    public void setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Starts measuring a loading phase.
+     *
+     * @param phase phase name
+     * @return phase timer
+     */
+    protected PhaseTimer startPhase(String phase) {
+        return PhaseTimer.start(metricsListener, getClass().getSimpleName(), phase);
+    }
+
+    /**
+     * Returns the parser of this loader, with this loader set as the content handler. The parser is taken from
+     * the {@link XMLReaderPool} on the first call and kept by the loader, it is never returned to the pool.
+     *
+     * @return parser
+     * @throws SAXException SAXException
+     * @deprecated loaders no longer keep a parser, take one from the {@link XMLReaderPool} for each parse
+     * and release it afterwards
+     */
+    @Deprecated
+    protected synchronized XMLReader getParser() throws SAXException {
+        if (null == parser) {
+            parser = XMLReaderPool.acquire();
+            parser.setContentHandler(this);
+        }
+        return parser;
+    }
+
+    @Override
+    public E loadContext(String location) throws ContextLoaderException {
+        try {
+            PhaseTimer load = startPhase("load");
+            PhaseTimer open = startPhase("open");
+            BufferedReader input = CompressedStreams.openReader(location);
+            open.stop();
+            try {
+                E result = process(input);
+                createIds(result);
+                if (null != metricsListener && null != result) {
+                    load.stop(result.nodesCount(), new File(location).length());
+                }
+                return result;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new ContextLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
     @Override
     protected void createIds(E result) {
         //ids should be already in XML
@@ -91,9 +197,16 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
     @Override
     protected E process(BufferedReader input) throws IOException, ContextLoaderException {
         try {
+            PhaseTimer parse = startPhase("parse");
             InputSource is = new InputSource(input);
-            parser.setContentHandler(this);
-            parser.parse(is);
+            XMLReader parser = XMLReaderPool.acquire();
+            try {
+                parser.setContentHandler(this);
+                parser.parse(is);
+            } finally {
+                XMLReaderPool.release(parser);
+            }
+            parse.stop(getProgress(), -1);
         } catch (ParseInterruptedException e) {
             ctx = null;
         } catch (SAXException | FileNotFoundException | UnsupportedEncodingException e) {
@@ -116,6 +229,8 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
             throw new ParseInterruptedException();
         }
         unique.clear();
+        elementCount = 0;
+        nodeCount = 0;
         setProgress(0);
     }
 
@@ -124,69 +239,84 @@ public abstract class BaseXMLContextLoader<E extends IBaseContext<T>, T extends
         if (Thread.currentThread().isInterrupted()) {
             throw new ParseInterruptedException();
         }
+        setProgress(nodeCount);
         log.info("Parsed nodes: " + getProgress());
         unique.clear();
     }
 
     @Override
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void endPrefixMapping(String prefix) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
+        if (ELEMENTS_PER_CHECK == ++elementCount) {
+            elementCount = 0;
+            setProgress(nodeCount);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ParseInterruptedException();
+            }
         }
     }
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
         content.append(ch, start, length);
     }
 
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void skippedEntity(String name) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
+    }
+
+    /**
+     * Counts a loaded node. Progress is updated in batches.
+     */
+    protected void countNode() {
+        nodeCount++;
+    }
+
+    /**
+     * Resolves the senses recorded while parsing the document.
+     *
+     * @param senses recorded senses, may be null
+     * @throws SAXException SAXException
+     */
+    protected void resolveSenses(SenseResolver.Batch senses) throws SAXException {
+        if (null != senses) {
+            PhaseTimer resolve = startPhase("senses");
+            int count = senses.size();
+            try {
+                senses.resolve();
+            } catch (LinguisticOracleException e) {
+                throw new SAXException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ParseInterruptedException();
+            }
+            resolve.stop(count, -1);
         }
     }
 
     protected String makeUnique(String s) {
-        if (uniqueStrings) {
+        if (null != interner) {
+            return interner.intern(s);
+        } else if (uniqueStrings) {
             String result = unique.get(s);
             if (null == result) {
                 unique.put(s, s);
@@ -0,0 +1,249 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.trees.Context;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.data.trees.INodeData;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+import it.unitn.disi.smatch.oracles.LinguisticOracleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Loader for the compact binary context format written by BinaryContextRenderer.
+ * <p/>
+ * The format is intended as a cache for contexts which are loaded many times. All strings are kept once
+ * in a string table and nodes refer to them by index. Integers are written as unsigned variable length
+ * quantities (7 bits per byte, high bit set on all bytes but the last). The layout is:
+ * <pre>
+ * magic        4 bytes, "SMCB"
+ * version      varint
+ * string count varint, followed by strings: varint byte length, UTF-8 bytes
+ * node count   varint, followed by nodes in pre-order:
+ *   parent     varint, parent node index + 1, 0 for the root
+ *   id, name, label formula, node formula, provenance: varint string index + 1, 0 for null
+ *   flags      1 byte, bit 0 is the preprocessed flag
+ *   acol count varint, followed by concepts:
+ *     id, token index + 1, lemma index + 1, sense count, sense id index + 1 for each sense
+ * </pre>
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class BinaryContextLoader extends AsyncTask<IContext, INode> implements IContextLoader, IAsyncContextLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryContextLoader.class);
+
+    public static final byte[] MAGIC = {'S', 'M', 'C', 'B'};
+    public static final int VERSION = 1;
+    public static final int FLAG_PREPROCESSED = 1;
+
+    public static final String BINARY_FILES = "Binary context files (*.bin)";
+
+    // how many nodes are loaded between interruption checks and progress updates
+    private static final int NODES_PER_BATCH = 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ILinguisticOracle oracle;
+    private final String location;
+
+    public BinaryContextLoader(ILinguisticOracle linguisticOracle) {
+        this.oracle = linguisticOracle;
+        this.location = null;
+    }
+
+    public BinaryContextLoader(ILinguisticOracle linguisticOracle, String location) {
+        this.oracle = linguisticOracle;
+        this.location = location;
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location) {
+        return new BinaryContextLoader(oracle, location);
+    }
+
+    @Override
+    protected IContext doInBackground() throws Exception {
+        return loadContext(location);
+    }
+
+    @Override
+    public IContext loadContext(String location) throws ContextLoaderException {
+        try {
+            InputStream input = CompressedStreams.openInputStream(location);
+            try {
+                return process(input);
+            } finally {
+                input.close();
+            }
+        } catch (IOException | LinguisticOracleException e) {
+            throw new ContextLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a context from the stream. The stream is not closed.
+     *
+     * @param input stream with binary context
+     * @return context or null, if interrupted
+     * @throws IOException               IOException
+     * @throws ContextLoaderException    if the stream is not a binary context
+     * @throws LinguisticOracleException LinguisticOracleException
+     */
+    protected IContext process(InputStream input) throws IOException, ContextLoaderException, LinguisticOracleException {
+        // reading state is kept per call for thread safety
+        Reader in = new Reader(input);
+        setProgress(0);
+        for (byte b : MAGIC) {
+            if (b != in.readByte()) {
+                throw new ContextLoaderException("Not a binary context file");
+            }
+        }
+        int version = in.readInt();
+        if (VERSION != version) {
+            throw new ContextLoaderException("Unsupported binary context version: " + version);
+        }
+
+        String[] strings = new String[in.readInt() + 1];
+        for (int i = 1; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+
+        IContext ctx = new Context();
+        INode[] nodes = new INode[in.readInt()];
+        for (int i = 0; i < nodes.length; i++) {
+            int parent = in.readInt();
+            INode node;
+            if (0 < parent) {
+                node = nodes[parent - 1].createChild();
+            } else if (null == ctx.getRoot()) {
+                node = ctx.createRoot();
+            } else {
+                // looks like there are multiple roots
+                INode oldRoot = ctx.getRoot();
+                INode newRoot = ctx.createRoot("Top");
+                newRoot.addChild(oldRoot);
+                node = newRoot.createChild();
+            }
+            nodes[i] = node;
+
+            INodeData nodeData = node.nodeData();
+            nodeData.setId(strings[in.readInt()]);
+            nodeData.setName(strings[in.readInt()]);
+            nodeData.setLabelFormula(strings[in.readInt()]);
+            nodeData.setNodeFormula(strings[in.readInt()]);
+            nodeData.setProvenance(strings[in.readInt()]);
+            nodeData.setIsPreprocessed(0 != (in.readByte() & FLAG_PREPROCESSED));
+
+            int acolCount = in.readInt();
+            for (int j = 0; j < acolCount; j++) {
+                IAtomicConceptOfLabel acol = nodeData.createConcept();
+                acol.setId(in.readInt());
+                acol.setToken(strings[in.readInt()]);
+                acol.setLemma(strings[in.readInt()]);
+                int senseCount = in.readInt();
+                for (int k = 0; k < senseCount; k++) {
+                    String senseId = strings[in.readInt()];
+                    if (null != oracle) {
+                        acol.getSenses().add(oracle.createSense(senseId));
+                    }
+                }
+                nodeData.getConcepts().add(acol);
+            }
+
+            if (0 == (i + 1) % NODES_PER_BATCH) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                setProgress(i + 1);
+            }
+        }
+
+        setProgress(nodes.length);
+        log.info("Loaded nodes: " + nodes.length);
+        return ctx;
+    }
+
+    /**
+     * Buffered reader of the binary format primitives.
+     */
+    private static class Reader {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        private Reader(InputStream in) {
+            this.in = in;
+        }
+
+        private int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private int readInt() throws IOException {
+            int result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                result |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (0 != (b & 0x80));
+            return result;
+        }
+
+        private String readString() throws IOException {
+            int length = readInt();
+            if (length <= limit - position) {
+                String result = new String(buffer, position, length, UTF8);
+                position += length;
+                return result;
+            }
+            byte[] bytes = new byte[length];
+            int copied = limit - position;
+            System.arraycopy(buffer, position, bytes, 0, copied);
+            position = limit;
+            while (copied < length) {
+                int read = in.read(bytes, copied, length - copied);
+                if (-1 == read) {
+                    throw new EOFException("Unexpected end of binary context");
+                }
+                copied += read;
+            }
+            return new String(bytes, UTF8);
+        }
+
+        private void fill() throws IOException {
+            int read = in.read(buffer, 0, buffer.length);
+            if (-1 == read) {
+                throw new EOFException("Unexpected end of binary context");
+            }
+            position = 0;
+            limit = read;
+        }
+    }
+
+    public String getDescription() {
+        return BINARY_FILES;
+    }
+
+    public ILoader.LoaderType getType() {
+        return ILoader.LoaderType.FILE;
+    }
+}
@@ -5,23 +5,34 @@ import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
 import it.unitn.disi.smatch.data.trees.Context;
 import it.unitn.disi.smatch.data.trees.IContext;
 import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
 import it.unitn.disi.smatch.oracles.ILinguisticOracle;
-import it.unitn.disi.smatch.oracles.LinguisticOracleException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.StringTokenizer;
+import java.util.NoSuchElementException;
 
 /**
  * Loader for old CTXML format, remains for compatibility.
+ * <p/>
+ * The loader reuses the content buffer, parses node names and sense lists in place and tracks the root
+ * while parsing. The node table is presized according to the file size.
+ * <p/>
+ * With lazy senses, concepts keep the sense ids and create the senses on the first access, see
+ * {@link LazyAtomicConceptOfLabel}. Sense ids are kept even without an oracle, which allows converting
+ * contexts into other formats without a linguistic oracle.
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  * @author Mikalai Yatskevich mikalai.yatskevich@comlab.ox.ac.uk
  */
-public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> implements IContextLoader, IAsyncContextLoader {
+public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> implements IContextLoader, IInterningContextLoader {
 
     private static final Logger log = LoggerFactory.getLogger(CTXMLContextLoader.class);
 
@@ -31,11 +42,29 @@ public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> im
     //default name of the base node
     private static final String BASE_NODE = "ctxBaseNode$c0";
 
+    // approximate size of a concept in a file, to presize the node table
+    private static final int BYTES_PER_NODE = 512;
+    // approximate compression ratio of compressed files
+    private static final int COMPRESSION_RATIO = 8;
+    private static final int DEFAULT_NODES = 1024;
+    private static final int MAX_PRESIZED_NODES = 1 << 22;
+
     private INode node;
     private IAtomicConceptOfLabel sense;
 
     // node unique name -> node
     private HashMap<String, INode> nodes;
+    // the first node created, the root is found from it
+    private INode first;
+    // expected amount of nodes in the document
+    private int expectedNodes = DEFAULT_NODES;
+
+    private SenseResolver senseResolver;
+    private boolean lazySenses;
+    // senses of the document being read
+    private SenseResolver.Batch senses;
+    // resolver of the lazy senses of the document being read, may be null
+    private SenseResolver lazyResolver;
 
     public CTXMLContextLoader(ILinguisticOracle linguisticOracle) {
         super();
@@ -52,46 +81,121 @@ public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> im
         this.oracle = linguisticOracle;
     }
 
+    public CTXMLContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle) {
+        super(interner);
+        this.oracle = linguisticOracle;
+    }
+
+    public CTXMLContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle, String location) {
+        super(interner, location);
+        this.oracle = linguisticOracle;
+    }
+
     @Override
     public AsyncTask<IContext, INode> asyncLoad(String location) {
-        return new CTXMLContextLoader(isUniqueStrings(), oracle, location);
+        return asyncLoad(location, getInterner());
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location, IStringInterner interner) {
+        CTXMLContextLoader result;
+        if (null != interner) {
+            result = new CTXMLContextLoader(interner, oracle, location);
+        } else {
+            result = new CTXMLContextLoader(isUniqueStrings(), oracle, location);
+        }
+        result.setMetricsListener(metricsListener);
+        result.setSenseResolver(senseResolver);
+        result.setLazySenses(lazySenses);
+        return result;
+    }
+
+    public SenseResolver getSenseResolver() {
+        return senseResolver;
+    }
+
+    /**
+     * Sets the resolver for the senses, which may be shared with other loaders.
+     * If not set, each document gets a resolver of its own.
+     *
+     * @param senseResolver sense resolver, may be null
+     */
+    public void setSenseResolver(SenseResolver senseResolver) {
+        this.senseResolver = senseResolver;
+    }
+
+    public boolean isLazySenses() {
+        return lazySenses;
+    }
+
+    /**
+     * Sets whether to create senses on the first access instead of while loading.
+     *
+     * @param lazySenses whether to create senses on the first access
+     */
+    public void setLazySenses(boolean lazySenses) {
+        this.lazySenses = lazySenses;
+    }
+
+    @Override
+    public IContext loadContext(String location) throws ContextLoaderException {
+        expectedNodes = estimateNodes(location);
+        return super.loadContext(location);
     }
 
     // content handler methods
     public void startDocument() throws SAXException {
         super.startDocument();
         ctx = new Context();
-        nodes = new HashMap<>();
+        nodes = new HashMap<>(1 + 4 * expectedNodes / 3);
+        first = null;
+        if (null == content) {
+            content = new StringBuilder();
+        }
+        if (null != senses) {
+            // left from an interrupted or failed document
+            senses.cancel();
+        }
+        SenseResolver resolver = senseResolver;
+        if (null == resolver && null != oracle) {
+            resolver = new SenseResolver(oracle);
+        }
+        if (lazySenses) {
+            lazyResolver = resolver;
+            senses = null;
+        } else {
+            lazyResolver = null;
+            senses = null == resolver ? null : resolver.newBatch();
+        }
     }
 
     public void startElement(String namespace, String localName, String qName, Attributes atts) throws SAXException {
         super.startElement(namespace, localName, qName, atts);
-        content = new StringBuilder();
+        content.setLength(0);
 
         switch (localName) {
             case "complexType-Concept":
                 String nodeName = atts.getValue("name");
                 if (!nodeName.equals(BASE_NODE)) {
-                    INode n = nodes.get(nodeName);
-                    if (null == n) {
-                        node = ctx.createNode();
-                        setNodeUniqueName(node, nodeName);
-                        nodes.put(nodeName, node);
-
-                        progress();
+                    node = nodes.get(nodeName);
+                    if (null == node) {
+                        node = createNode(nodeName);
                     }
+                    countNode();
                 }
                 break;
             case "sense":
-                sense = node.nodeData().createConcept();
+                if (lazySenses) {
+                    sense = new LazyAtomicConceptOfLabel(lazyResolver);
+                } else {
+                    sense = node.nodeData().createConcept();
+                }
                 break;
             case "extension":
                 String parentName = atts.getValue("base");
                 INode parentNode = nodes.get(parentName);
                 if (null == parentNode) {
-                    parentNode = ctx.createNode();
-                    setNodeUniqueName(parentNode, parentName);
-                    nodes.put(parentName, parentNode);
+                    parentNode = createNode(parentName);
                 }
                 parentNode.addChild(node);
                 break;
@@ -103,34 +207,27 @@ public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> im
         if (0 < content.length()) {
             switch (localName) {
                 case "logicalFormulaRepresentation":
-                    node.nodeData().setNodeFormula(content.toString().trim());
+                    node.nodeData().setNodeFormula(trimContent());
                     break;
                 case "cLabFormula":
-                    node.nodeData().setLabelFormula(content.toString().trim());
+                    node.nodeData().setLabelFormula(trimContent());
                     break;
                 case "idToken":
-                    sense.setId(Integer.parseInt(content.toString()));
+                    sense.setId(parseContentInt());
                     break;
                 case "token":
-                    sense.setToken(content.toString());
+                    sense.setToken(makeUnique(content.toString()));
                     break;
                 case "lemma":
-                    sense.setLemma(content.toString());
+                    sense.setLemma(makeUnique(content.toString()));
                     break;
                 case "wSenses":
-                    if (-1 < content.indexOf("#") && null != oracle) {
-                        String[] senses = content.toString().trim().split(" ");
-                        try {
-                            for (String s : senses) {
-                                    sense.getSenses().add(oracle.createSense(s));
-                            }
-                        } catch (LinguisticOracleException e) {
-                            throw new RuntimeException(e.getMessage(), e);
-                        }
+                    if ((lazySenses || null != senses) && -1 < content.indexOf("#")) {
+                        addSenses();
                     }
                     break;
             }
-            content = new StringBuilder();
+            content.setLength(0);
         }
         if ("sense".equals(localName)) {
             node.nodeData().getConcepts().add(sense);
@@ -140,14 +237,33 @@ public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> im
     public void endDocument() throws SAXException {
         super.endDocument();
         log.debug("Finding root...");
+        PhaseTimer findRoot = startPhase("root");
         INode root = findRoot();
         ctx.setRoot(root);
-        nodes.clear();
+        findRoot.stop(nodes.size(), -1);
+        nodes = null;
+        first = null;
+        node = null;
+        sense = null;
+        lazyResolver = null;
+        SenseResolver.Batch batch = senses;
+        senses = null;
+        resolveSenses(batch);
     }
 
     //content handler end
 
     private INode findRoot() {
+        // in a well formed document all nodes are in one tree, the top of which is the root
+        if (null != first) {
+            INode result = first;
+            for (int i = nodes.size(); 0 < i && result.hasParent(); i--) {
+                result = result.getParent();
+            }
+            if (!result.hasParent() && !BASE_NODE.equals(result.nodeData().getName())) {
+                return result;
+            }
+        }
         for (INode node : nodes.values()) {
             if (!node.hasParent() && !BASE_NODE.equals(node.nodeData().getName())) {
                 return node;
@@ -156,9 +272,122 @@ public class CTXMLContextLoader extends BaseXMLContextLoader<IContext, INode> im
         return null;
     }
 
+    private INode createNode(String nodeName) {
+        INode result = ctx.createNode();
+        setNodeUniqueName(result, nodeName);
+        nodes.put(nodeName, result);
+        if (null == first) {
+            first = result;
+        }
+        return result;
+    }
+
+    /**
+     * Sets the node name and id from the unique name of the node, that is name$id.
+     *
+     * @param node     node
+     * @param nodeName unique name of the node
+     */
     private void setNodeUniqueName(INode node, String nodeName) {
-        StringTokenizer idName = new StringTokenizer(nodeName, "$");
-        node.nodeData().setName(idName.nextToken());
-        node.nodeData().setId(idName.nextToken());
+        // the same as the first two tokens delimited by $
+        final int length = nodeName.length();
+        int nameStart = 0;
+        while (nameStart < length && '$' == nodeName.charAt(nameStart)) {
+            nameStart++;
+        }
+        int nameEnd = nodeName.indexOf('$', nameStart);
+        if (-1 == nameEnd) {
+            throw new NoSuchElementException("No node id in " + nodeName);
+        }
+        int idStart = nameEnd;
+        while (idStart < length && '$' == nodeName.charAt(idStart)) {
+            idStart++;
+        }
+        if (idStart == length) {
+            throw new NoSuchElementException("No node id in " + nodeName);
+        }
+        int idEnd = nodeName.indexOf('$', idStart);
+        if (-1 == idEnd) {
+            idEnd = length;
+        }
+        node.nodeData().setName(makeUnique(nodeName.substring(nameStart, nameEnd)));
+        node.nodeData().setId(nodeName.substring(idStart, idEnd));
+    }
+
+    /**
+     * Returns the content without leading and trailing whitespace.
+     *
+     * @return trimmed content
+     */
+    private String trimContent() {
+        int start = 0;
+        int end = content.length();
+        while (start < end && content.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && content.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return content.substring(start, end);
+    }
+
+    private int parseContentInt() {
+        final int length = content.length();
+        // up to 9 digits fit into int
+        if (length <= 9) {
+            int result = 0;
+            for (int i = 0; i < length; i++) {
+                char c = content.charAt(i);
+                if (c < '0' || '9' < c) {
+                    return Integer.parseInt(content.toString());
+                }
+                result = 10 * result + (c - '0');
+            }
+            return result;
+        }
+        return Integer.parseInt(content.toString());
+    }
+
+    /**
+     * Adds the space separated senses from the content to the current concept.
+     */
+    private void addSenses() {
+        // the same as trim().split(" ")
+        int start = 0;
+        int end = content.length();
+        while (start < end && content.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && content.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int from = start;
+        for (int i = start; i < end; i++) {
+            if (' ' == content.charAt(i)) {
+                addSense(content.substring(from, i));
+                from = i + 1;
+            }
+        }
+        addSense(content.substring(from, end));
+    }
+
+    private void addSense(String senseId) {
+        if (lazySenses) {
+            ((LazyAtomicConceptOfLabel) sense).addSenseId(makeUnique(senseId));
+        } else {
+            senses.add(sense, senseId);
+        }
+    }
+
+    private static int estimateNodes(String location) {
+        try {
+            long size = new File(location).length();
+            if (0 < size && CompressedStreams.isCompressedFile(location)) {
+                size = size * COMPRESSION_RATIO;
+            }
+            return (int) Math.max(DEFAULT_NODES, Math.min(MAX_PRESIZED_NODES, size / BYTES_PER_NODE));
+        } catch (IOException e) {
+            return DEFAULT_NODES;
+        }
     }
 }
@@ -0,0 +1,190 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.Parallelism;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads many contexts in parallel using tasks created by an async loader. At most parallelism contexts are
+ * loaded at the same time, whatever executor is used. This allows passing an executor with unbounded number
+ * of threads, for example, a virtual thread per task executor.
+ * <p/>
+ * Optionally, strings of all loaded contexts are made unique through one shared interner, so that contexts
+ * with the same vocabulary share strings. The interner is passed to the loading tasks, therefore strings are
+ * shared as they are parsed. This needs an {@link IInterningContextLoader}, with other loaders the interner
+ * is not used.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class ContextBatchLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextBatchLoader.class);
+
+    private final IAsyncContextLoader loader;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final Semaphore permits;
+    private final IStringInterner interner;
+
+    // tasks of the latest batch, for progress reporting
+    private volatile List<AsyncTask<IContext, INode>> tasks = new ArrayList<>();
+    private volatile AtomicInteger loaded = new AtomicInteger();
+
+    /**
+     * Creates a batch loader with its own fixed thread pool.
+     *
+     * @param loader        loader which creates loading tasks
+     * @param parallelism   how many contexts to load at the same time
+     * @param interner      interner to share strings across loaded contexts, may be null
+     */
+    public ContextBatchLoader(IAsyncContextLoader loader, int parallelism, IStringInterner interner) {
+        this(loader, Executors.newFixedThreadPool(parallelism), true, parallelism, interner);
+    }
+
+    /**
+     * Creates a batch loader which runs tasks on the given executor. The executor is not shut down.
+     *
+     * @param loader        loader which creates loading tasks
+     * @param executor      executor to run loading tasks
+     * @param parallelism   how many contexts to load at the same time
+     * @param interner      interner to share strings across loaded contexts, may be null
+     */
+    public ContextBatchLoader(IAsyncContextLoader loader, ExecutorService executor, int parallelism, IStringInterner interner) {
+        this(loader, executor, false, parallelism, interner);
+    }
+
+    private ContextBatchLoader(IAsyncContextLoader loader, ExecutorService executor, boolean ownExecutor, int parallelism, IStringInterner interner) {
+        this.loader = loader;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.permits = new Semaphore(Parallelism.check(parallelism));
+        this.interner = interner;
+        if (null != interner && !(loader instanceof IInterningContextLoader)) {
+            log.warn("Loader " + loader.getClass().getSimpleName() + " does not support interners, strings are not shared");
+        }
+    }
+
+    /**
+     * Loads contexts from the locations.
+     *
+     * @param locations locations of the contexts
+     * @return contexts in the order of locations
+     * @throws ContextLoaderException if any of the contexts fails to load
+     * @throws InterruptedException   if interrupted while waiting, the loading tasks are cancelled
+     */
+    public List<IContext> load(List<String> locations) throws ContextLoaderException, InterruptedException {
+        // each call has its own list, so that concurrent calls do not clear each other's progress
+        final List<AsyncTask<IContext, INode>> tasks = new ArrayList<>(locations.size());
+        final AtomicInteger loaded = new AtomicInteger();
+        this.tasks = tasks;
+        this.loaded = loaded;
+        long start = System.currentTimeMillis();
+
+        List<Future<IContext>> futures = new ArrayList<>(locations.size());
+        try {
+            for (String location : locations) {
+                final AsyncTask<IContext, INode> task = createTask(location);
+                synchronized (tasks) {
+                    tasks.add(task);
+                }
+                futures.add(executor.submit(new Callable<IContext>() {
+                    @Override
+                    public IContext call() throws Exception {
+                        permits.acquire();
+                        try {
+                            task.run();
+                            IContext result = task.get();
+                            loaded.incrementAndGet();
+                            return result;
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                }));
+            }
+
+            List<IContext> result = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause();
+                    if (cause instanceof ContextLoaderException) {
+                        throw (ContextLoaderException) cause;
+                    }
+                    throw new ContextLoaderException("Error loading " + locations.get(i) + ": " + cause.getMessage(), cause);
+                }
+            }
+
+            if (log.isInfoEnabled()) {
+                long time = Math.max(1, System.currentTimeMillis() - start);
+                long nodes = getProgress(tasks);
+                log.info("Loaded " + result.size() + " contexts, " + nodes + " nodes in " + time + "ms ("
+                        + (nodes * 1000 / time) + " nodes/s)");
+            }
+            return result;
+        } finally {
+            for (Future<IContext> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private AsyncTask<IContext, INode> createTask(String location) {
+        if (null != interner && loader instanceof IInterningContextLoader) {
+            return ((IInterningContextLoader) loader).asyncLoad(location, interner);
+        }
+        return loader.asyncLoad(location);
+    }
+
+    /**
+     * Returns aggregate progress of the latest batch, as the sum of the progress of its tasks.
+     *
+     * @return aggregate progress
+     */
+    public long getProgress() {
+        return getProgress(tasks);
+    }
+
+    private static long getProgress(List<AsyncTask<IContext, INode>> tasks) {
+        long result = 0;
+        synchronized (tasks) {
+            for (AsyncTask<IContext, INode> task : tasks) {
+                result += task.getProgress();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns how many contexts of the latest batch are loaded.
+     *
+     * @return how many contexts are loaded
+     */
+    public int getLoaded() {
+        return loaded.get();
+    }
+
+    /**
+     * Shuts down the executor, if it was created by this loader.
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+}
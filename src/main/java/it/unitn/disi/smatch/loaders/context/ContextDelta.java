@@ -0,0 +1,71 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.data.trees.IContext;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Changes applied to a context by {@link SimpleXMLDeltaContextLoader}: ids of added, removed and updated
+ * nodes. A node is updated if its data, its parent or the order of its children changed.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class ContextDelta {
+
+    private final IContext context;
+    private final Set<String> addedIds;
+    private final Set<String> removedIds;
+    private final Set<String> updatedIds;
+
+    public ContextDelta(IContext context, Set<String> addedIds, Set<String> removedIds, Set<String> updatedIds) {
+        this.context = context;
+        this.addedIds = Collections.unmodifiableSet(addedIds);
+        this.removedIds = Collections.unmodifiableSet(removedIds);
+        this.updatedIds = Collections.unmodifiableSet(updatedIds);
+    }
+
+    /**
+     * Returns the context with the changes applied.
+     *
+     * @return the changed context
+     */
+    public IContext getContext() {
+        return context;
+    }
+
+    public Set<String> getAddedIds() {
+        return addedIds;
+    }
+
+    public Set<String> getRemovedIds() {
+        return removedIds;
+    }
+
+    public Set<String> getUpdatedIds() {
+        return updatedIds;
+    }
+
+    /**
+     * Returns ids of all added, removed and updated nodes.
+     *
+     * @return ids of changed nodes
+     */
+    public Set<String> getChangedIds() {
+        Set<String> result = new LinkedHashSet<>(addedIds.size() + removedIds.size() + updatedIds.size());
+        result.addAll(addedIds);
+        result.addAll(removedIds);
+        result.addAll(updatedIds);
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return addedIds.isEmpty() && removedIds.isEmpty() && updatedIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added: " + addedIds.size() + ", removed: " + removedIds.size() + ", updated: " + updatedIds.size();
+    }
+}
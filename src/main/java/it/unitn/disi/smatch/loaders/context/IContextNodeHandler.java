@@ -0,0 +1,31 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.data.trees.INode;
+
+import java.io.IOException;
+
+/**
+ * Receives nodes streamed from a context file, in document order. The node is started when its data is read,
+ * that is before its children, and ended after its children. When a node is started or ended, only the node,
+ * its ancestors and, if the node has children, its last child are kept in memory.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IContextNodeHandler {
+
+    /**
+     * Handles the node before its children. The node has a child, if it has children.
+     *
+     * @param node node
+     * @throws IOException IOException
+     */
+    void startNode(INode node) throws IOException;
+
+    /**
+     * Handles the node after its children.
+     *
+     * @param node node
+     * @throws IOException IOException
+     */
+    void endNode(INode node) throws IOException;
+}
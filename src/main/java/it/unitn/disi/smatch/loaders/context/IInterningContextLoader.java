@@ -0,0 +1,25 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+
+/**
+ * Async context loader which creates loading tasks making strings unique through a given interner,
+ * so that contexts loaded in parallel share strings as they are parsed.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IInterningContextLoader extends IAsyncContextLoader {
+
+    /**
+     * Creates a loading task with the same settings as this loader, but with the given interner.
+     *
+     * @param location location of the context
+     * @param interner interner to make strings unique, may be shared with other loaders, null to use
+     *                 the settings of this loader
+     * @return loading task
+     */
+    AsyncTask<IContext, INode> asyncLoad(String location, IStringInterner interner);
+}
@@ -0,0 +1,128 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.data.ling.AtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.ling.ISense;
+import it.unitn.disi.smatch.io.ISenseIdSource;
+import it.unitn.disi.smatch.io.SenseIds;
+import it.unitn.disi.smatch.oracles.LinguisticOracleException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Atomic concept of label which keeps sense ids and creates the senses on the first access to them.
+ * Loading and rendering a context does not need the senses, only their ids, therefore contexts loaded
+ * with lazy senses are loaded faster and take less memory, until the senses are accessed.
+ * <p/>
+ * Renderers read sense ids through {@link SenseIds}, which does not create the senses.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class LazyAtomicConceptOfLabel extends AtomicConceptOfLabel implements ISenseIdSource {
+
+    private static final String[] NO_IDS = new String[0];
+
+    private final SenseResolver resolver;
+    // ids of the senses not created yet, null once the senses are created
+    private volatile String[] senseIds = NO_IDS;
+
+    /**
+     * @param resolver resolver to create the senses with, may be null, for example, when converting contexts
+     *                 between formats, then there are no senses and the ids are only available through
+     *                 {@link SenseIds}
+     */
+    public LazyAtomicConceptOfLabel(SenseResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Adds the sense id. If the senses are created already, the sense is created too.
+     *
+     * @param senseId sense id
+     */
+    public synchronized void addSenseId(String senseId) {
+        String[] ids = senseIds;
+        if (null == ids) {
+            super.getSenses().add(createSense(senseId));
+        } else {
+            ids = Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = senseId;
+            senseIds = ids;
+        }
+    }
+
+    /**
+     * Returns whether the senses are created.
+     *
+     * @return true if the senses are created
+     */
+    public boolean isResolved() {
+        return null == senseIds;
+    }
+
+    @Override
+    public List<ISense> getSenses() {
+        if (null != senseIds && null != resolver) {
+            resolve();
+        }
+        return super.getSenses();
+    }
+
+    private synchronized void resolve() {
+        String[] ids = senseIds;
+        if (null != ids) {
+            List<ISense> senses = super.getSenses();
+            for (String id : ids) {
+                senses.add(createSense(id));
+            }
+            senseIds = null;
+        }
+    }
+
+    private ISense createSense(String id) {
+        // only called with a resolver, without it the senses are never resolved
+        try {
+            return resolver.getSense(id);
+        } catch (LinguisticOracleException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int getSenseCount() {
+        String[] ids = senseIds;
+        return null == ids ? super.getSenses().size() : ids.length;
+    }
+
+    @Override
+    public String getSenseId(int index) {
+        String[] ids = senseIds;
+        return null == ids ? super.getSenses().get(index).getId() : ids[index];
+    }
+
+    /**
+     * Returns the amount of senses of the concept without creating lazy senses.
+     *
+     * @param acol atomic concept of label
+     * @return the amount of senses
+     * @deprecated use {@link SenseIds#getSenseCount(IAtomicConceptOfLabel)}
+     */
+    @Deprecated
+    public static int getSenseCount(IAtomicConceptOfLabel acol) {
+        return SenseIds.getSenseCount(acol);
+    }
+
+    /**
+     * Returns the id of the sense of the concept without creating lazy senses.
+     *
+     * @param acol  atomic concept of label
+     * @param index index of the sense
+     * @return the sense id
+     * @deprecated use {@link SenseIds#getSenseId(IAtomicConceptOfLabel, int)}
+     */
+    @Deprecated
+    public static String getSenseId(IAtomicConceptOfLabel acol, int index) {
+        return SenseIds.getSenseId(acol, index);
+    }
+}
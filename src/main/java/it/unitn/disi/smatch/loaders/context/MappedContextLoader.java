@@ -0,0 +1,100 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.trees.Context;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Loads precompiled context files written by MappedContextRenderer. The file is mapped into memory
+ * and only the tree structure is created on load. Node data is decoded from the mapped file on access,
+ * see {@link MappedNode}.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class MappedContextLoader extends AsyncTask<IContext, INode> implements IContextLoader, IAsyncContextLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedContextLoader.class);
+
+    public static final String MAPPED_FILES = "Mapped context files (*.smc)";
+
+    // how many nodes are loaded between interruption checks and progress updates
+    private static final int NODES_PER_BATCH = 1024;
+
+    private final ILinguisticOracle oracle;
+    private final String location;
+
+    public MappedContextLoader(ILinguisticOracle linguisticOracle) {
+        this.oracle = linguisticOracle;
+        this.location = null;
+    }
+
+    public MappedContextLoader(ILinguisticOracle linguisticOracle, String location) {
+        this.oracle = linguisticOracle;
+        this.location = location;
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location) {
+        return new MappedContextLoader(oracle, location);
+    }
+
+    @Override
+    protected IContext doInBackground() throws Exception {
+        return loadContext(location);
+    }
+
+    @Override
+    public IContext loadContext(String location) throws ContextLoaderException {
+        MappedContextStore store;
+        try {
+            store = MappedContextStore.open(location);
+        } catch (IOException e) {
+            throw new ContextLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+
+        if (Integer.MAX_VALUE < store.getNodeCount()) {
+            throw new ContextLoaderException("Too many nodes: " + store.getNodeCount());
+        }
+        int nodeCount = (int) store.getNodeCount();
+        setProgress(0);
+
+        IContext ctx = new Context();
+        INode[] nodes = new INode[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            INode node = new MappedNode(store, oracle, i);
+            int parent = store.getParent(i);
+            if (-1 == parent) {
+                ctx.setRoot(node);
+            } else {
+                nodes[parent].addChild(node);
+            }
+            nodes[i] = node;
+
+            if (0 == (i + 1) % NODES_PER_BATCH) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                setProgress(i + 1);
+            }
+        }
+
+        setProgress(nodeCount);
+        log.info("Mapped nodes: " + nodeCount);
+        return ctx;
+    }
+
+    public String getDescription() {
+        return MAPPED_FILES;
+    }
+
+    public ILoader.LoaderType getType() {
+        return ILoader.LoaderType.FILE;
+    }
+}
@@ -0,0 +1,170 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Read-only view of a precompiled context file mapped into memory with FileChannel.map().
+ * <p/>
+ * The file consists of a header, a node area with fixed size node records in pre-order and a data area
+ * with strings and concepts. All values are big endian. Files larger than 2GB are mapped in segments
+ * and the writer makes sure that no record or data item crosses a segment boundary.
+ * <pre>
+ * header, HEADER_SIZE bytes:
+ *   magic "SMCM", int version, long node count, long node area offset, long data area offset
+ * node record, RECORD_SIZE bytes:
+ *   int parent index + 1 (0 for the root), int flags,
+ *   long id, name, label formula, node formula, provenance, concepts: absolute data offsets, -1 for null
+ * string:
+ *   int byte length, UTF-8 bytes
+ * concepts:
+ *   int count, for each concept: int id, long token, long lemma, int sense count, long sense id for each sense
+ * </pre>
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class MappedContextStore {
+
+    public static final byte[] MAGIC = {'S', 'M', 'C', 'M'};
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 64;
+
+    public static final int SEGMENT_BITS = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    public static final int FLAG_PREPROCESSED = 1;
+
+    // offsets of the fields inside node record
+    public static final int PARENT = 0;
+    public static final int FLAGS = 4;
+    public static final int ID = 8;
+    public static final int NAME = 16;
+    public static final int LABEL_FORMULA = 24;
+    public static final int NODE_FORMULA = 32;
+    public static final int PROVENANCE = 40;
+    public static final int CONCEPTS = 48;
+
+    public static final long NULL = -1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final MappedByteBuffer[] segments;
+    private final long nodeCount;
+    private final long nodesOffset;
+
+    private MappedContextStore(MappedByteBuffer[] segments, long nodeCount, long nodesOffset) {
+        this.segments = segments;
+        this.nodeCount = nodeCount;
+        this.nodesOffset = nodesOffset;
+    }
+
+    /**
+     * Maps the file into memory. The mapping remains valid after the file is closed.
+     *
+     * @param location file name
+     * @return store
+     * @throws IOException            IOException
+     * @throws ContextLoaderException if the file is not a precompiled context
+     */
+    public static MappedContextStore open(String location) throws IOException, ContextLoaderException {
+        RandomAccessFile file = new RandomAccessFile(location, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new ContextLoaderException("Not a mapped context file: " + location);
+            }
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+
+            ByteBuffer header = segments[0];
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (MAGIC[i] != header.get(i)) {
+                    throw new ContextLoaderException("Not a mapped context file: " + location);
+                }
+            }
+            int version = header.getInt(4);
+            if (VERSION != version) {
+                throw new ContextLoaderException("Unsupported mapped context version: " + version);
+            }
+            return new MappedContextStore(segments, header.getLong(8), header.getLong(16));
+        } finally {
+            file.close();
+        }
+    }
+
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns parent index of the node, or -1 for the root.
+     *
+     * @param node node index
+     * @return parent index or -1
+     */
+    public int getParent(int node) {
+        return getInt(record(node) + PARENT) - 1;
+    }
+
+    public int getFlags(int node) {
+        return getInt(record(node) + FLAGS);
+    }
+
+    /**
+     * Decodes a string field of the node record, like {@link #NAME}.
+     *
+     * @param node  node index
+     * @param field field offset in the node record
+     * @return decoded string or null
+     */
+    public String getString(int node, int field) {
+        return getString(getLong(record(node) + field));
+    }
+
+    /**
+     * Returns the offset of the concepts of the node, or {@link #NULL}.
+     *
+     * @param node node index
+     * @return concepts offset
+     */
+    public long getConcepts(int node) {
+        return getLong(record(node) + CONCEPTS);
+    }
+
+    public String getString(long offset) {
+        if (NULL == offset) {
+            return null;
+        }
+        ByteBuffer segment = segments[(int) (offset >>> SEGMENT_BITS)];
+        int position = (int) (offset & SEGMENT_MASK);
+        int length = segment.getInt(position);
+        byte[] bytes = new byte[length];
+        ByteBuffer view = segment.duplicate();
+        view.position(position + 4);
+        view.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    public int getInt(long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)].getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    public long getLong(long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & SEGMENT_MASK));
+    }
+
+    private long record(int node) {
+        return nodesOffset + (long) node * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,154 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.trees.Node;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+import it.unitn.disi.smatch.oracles.LinguisticOracleException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Node backed by a record in a {@link MappedContextStore}. Node data is decoded from the mapped buffer
+ * on each access until it is changed with a setter. Concepts are decoded once, on first access.
+ * <p/>
+ * Nodes may be read concurrently, for example, by matchers sharing a context. Setters and the decoding
+ * of concepts hold the node lock and publish the change through the volatile set of flags.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class MappedNode extends Node {
+
+    // which fields have been set and are kept in the node itself
+    private static final int ID_SET = 1;
+    private static final int NAME_SET = 2;
+    private static final int LABEL_FORMULA_SET = 4;
+    private static final int NODE_FORMULA_SET = 8;
+    private static final int PROVENANCE_SET = 16;
+    private static final int PREPROCESSED_SET = 32;
+    private static final int CONCEPTS_SET = 64;
+
+    private final MappedContextStore store;
+    private final ILinguisticOracle oracle;
+    private final int index;
+    // guarded by this for writes, read without locking
+    private volatile int set;
+
+    public MappedNode(MappedContextStore store, ILinguisticOracle oracle, int index) {
+        super();
+        this.store = store;
+        this.oracle = oracle;
+        this.index = index;
+    }
+
+    @Override
+    public String getId() {
+        return 0 == (set & ID_SET) ? store.getString(index, MappedContextStore.ID) : super.getId();
+    }
+
+    @Override
+    public synchronized void setId(String id) {
+        super.setId(id);
+        set |= ID_SET;
+    }
+
+    @Override
+    public String getName() {
+        return 0 == (set & NAME_SET) ? store.getString(index, MappedContextStore.NAME) : super.getName();
+    }
+
+    @Override
+    public synchronized void setName(String name) {
+        super.setName(name);
+        set |= NAME_SET;
+    }
+
+    @Override
+    public String getLabelFormula() {
+        return 0 == (set & LABEL_FORMULA_SET) ? store.getString(index, MappedContextStore.LABEL_FORMULA) : super.getLabelFormula();
+    }
+
+    @Override
+    public synchronized void setLabelFormula(String labelFormula) {
+        super.setLabelFormula(labelFormula);
+        set |= LABEL_FORMULA_SET;
+    }
+
+    @Override
+    public String getNodeFormula() {
+        return 0 == (set & NODE_FORMULA_SET) ? store.getString(index, MappedContextStore.NODE_FORMULA) : super.getNodeFormula();
+    }
+
+    @Override
+    public synchronized void setNodeFormula(String nodeFormula) {
+        super.setNodeFormula(nodeFormula);
+        set |= NODE_FORMULA_SET;
+    }
+
+    @Override
+    public String getProvenance() {
+        return 0 == (set & PROVENANCE_SET) ? store.getString(index, MappedContextStore.PROVENANCE) : super.getProvenance();
+    }
+
+    @Override
+    public synchronized void setProvenance(String provenance) {
+        super.setProvenance(provenance);
+        set |= PROVENANCE_SET;
+    }
+
+    @Override
+    public boolean getIsPreprocessed() {
+        if (0 == (set & PREPROCESSED_SET)) {
+            return 0 != (store.getFlags(index) & MappedContextStore.FLAG_PREPROCESSED);
+        }
+        return super.getIsPreprocessed();
+    }
+
+    @Override
+    public synchronized void setIsPreprocessed(boolean isPreprocessed) {
+        super.setIsPreprocessed(isPreprocessed);
+        set |= PREPROCESSED_SET;
+    }
+
+    @Override
+    public List<IAtomicConceptOfLabel> getConcepts() {
+        if (0 == (set & CONCEPTS_SET)) {
+            decodeConcepts();
+        }
+        return super.getConcepts();
+    }
+
+    private synchronized void decodeConcepts() {
+        if (0 != (set & CONCEPTS_SET)) {
+            return;
+        }
+        // decoded aside and published at once, readers never see a partial list
+        List<IAtomicConceptOfLabel> concepts = new ArrayList<>();
+        long offset = store.getConcepts(index);
+        if (MappedContextStore.NULL != offset) {
+            int count = store.getInt(offset);
+            offset += 4;
+            for (int i = 0; i < count; i++) {
+                IAtomicConceptOfLabel acol = createConcept();
+                acol.setId(store.getInt(offset));
+                acol.setToken(store.getString(store.getLong(offset + 4)));
+                acol.setLemma(store.getString(store.getLong(offset + 12)));
+                int senseCount = store.getInt(offset + 20);
+                offset += 24;
+                for (int j = 0; j < senseCount; j++) {
+                    if (null != oracle) {
+                        try {
+                            acol.getSenses().add(oracle.createSense(store.getString(store.getLong(offset))));
+                        } catch (LinguisticOracleException e) {
+                            throw new RuntimeException(e.getMessage(), e);
+                        }
+                    }
+                    offset += 8;
+                }
+                concepts.add(acol);
+            }
+        }
+        super.getConcepts().addAll(concepts);
+        set |= CONCEPTS_SET;
+    }
+}
@@ -0,0 +1,263 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.trees.Context;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the class hierarchy of an OWL ontology in RDF/XML format, such as written by OWLContextRenderer,
+ * as a context. Each owl:Class becomes a node with the class id, the part of its URI after #, and the name
+ * from rdfs:label, or the id, if there is no label. The rdfs:subClassOf references make the hierarchy.
+ * <p/>
+ * The file is read in one pass. Classes referenced before they are declared get placeholder nodes, which are
+ * filled in when the declaration is read. Nodes without parents are tracked while parsing, so that the root
+ * is known at the end of the document without scanning the nodes. If there are several of them, they are put
+ * under a new Top root. Apart from the context, only the class id to node table is kept, and released after
+ * loading.
+ * <p/>
+ * Contexts are trees, therefore only the first superclass of a class is taken into account, superclasses making
+ * a cycle are skipped, and so is owl:Thing. Other class descriptions, like restrictions, are ignored.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class OWLContextLoader extends BaseXMLContextLoader<IContext, INode> implements IContextLoader, IInterningContextLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(OWLContextLoader.class);
+
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String RDFS_NS = "http://www.w3.org/2000/01/rdf-schema#";
+    private static final String OWL_NS = "http://www.w3.org/2002/07/owl#";
+    private static final String OWL_THING = OWL_NS + "Thing";
+
+    // content handler variables
+    // class id -> node
+    private Map<String, INode> nodes;
+    // nodes without parents, in the order of creation
+    private Set<INode> parentless;
+    // class being read, null outside of class declarations
+    private INode node;
+    // how deep in the class declaration the parser is, the class element is 1
+    private int classDepth;
+    // whether inside a superclass reference
+    private boolean inSubClassOf;
+    private boolean inLabel;
+    private boolean labelRead;
+
+    public OWLContextLoader() {
+        super();
+    }
+
+    public OWLContextLoader(boolean uniqueStrings) {
+        super(uniqueStrings);
+    }
+
+    public OWLContextLoader(boolean uniqueStrings, String location) {
+        super(uniqueStrings, location);
+    }
+
+    public OWLContextLoader(IStringInterner interner) {
+        super(interner);
+    }
+
+    public OWLContextLoader(IStringInterner interner, String location) {
+        super(interner, location);
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location) {
+        return asyncLoad(location, getInterner());
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location, IStringInterner interner) {
+        OWLContextLoader result;
+        if (null != interner) {
+            result = new OWLContextLoader(interner, location);
+        } else {
+            result = new OWLContextLoader(isUniqueStrings(), location);
+        }
+        result.setMetricsListener(metricsListener);
+        return result;
+    }
+
+    @Override
+    public String getDescription() {
+        return ILoader.OWL_FILES;
+    }
+
+    // content handler methods
+    @Override
+    public void startDocument() throws SAXException {
+        super.startDocument();
+        ctx = new Context();
+        nodes = new HashMap<>();
+        parentless = new LinkedHashSet<>();
+        node = null;
+        classDepth = 0;
+        inSubClassOf = false;
+        inLabel = false;
+        if (null == content) {
+            content = new StringBuilder();
+        }
+    }
+
+    @Override
+    public void startElement(String namespace, String localName, String qName, Attributes atts) throws SAXException {
+        super.startElement(namespace, localName, qName, atts);
+        if (null == node) {
+            if (OWL_NS.equals(namespace) && "Class".equals(localName)) {
+                String id = getClassId(atts);
+                if (null != id) {
+                    node = getNode(id);
+                    classDepth = 1;
+                    labelRead = false;
+                }
+            }
+            return;
+        }
+
+        classDepth++;
+        if (inSubClassOf) {
+            // superclass described by a nested class element, deeper ones belong to restrictions and the like
+            if (3 == classDepth && OWL_NS.equals(namespace) && "Class".equals(localName)) {
+                setParent(getClassId(atts));
+            }
+        } else if (2 == classDepth) {
+            if (RDFS_NS.equals(namespace)) {
+                switch (localName) {
+                    case "subClassOf":
+                        inSubClassOf = true;
+                        setParent(getReference(atts.getValue(RDF_NS, "resource")));
+                        break;
+                    case "label":
+                        if (!labelRead) {
+                            inLabel = true;
+                            content.setLength(0);
+                        }
+                        break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        super.endElement(uri, localName, qName);
+        if (null == node) {
+            return;
+        }
+
+        if (2 == classDepth) {
+            if (inLabel) {
+                node.nodeData().setName(makeUnique(content.toString().trim()));
+                content.setLength(0);
+                inLabel = false;
+                labelRead = true;
+            }
+            inSubClassOf = false;
+        }
+        classDepth--;
+        if (0 == classDepth) {
+            node = null;
+            countNode();
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (inLabel) {
+            super.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        super.endDocument();
+        log.debug("Finding root...");
+        PhaseTimer findRoot = startPhase("root");
+        if (1 == parentless.size()) {
+            ctx.setRoot(parentless.iterator().next());
+        } else if (1 < parentless.size()) {
+            INode root = ctx.createRoot("Top");
+            for (INode top : parentless) {
+                root.addChild(top);
+            }
+        }
+        findRoot.stop(parentless.size(), -1);
+        nodes = null;
+        parentless = null;
+        node = null;
+    }
+
+    //content handler end
+
+    /**
+     * Returns the node of the class, creating a placeholder, if the class is not known yet.
+     *
+     * @param id class id
+     * @return node
+     */
+    private INode getNode(String id) {
+        INode result = nodes.get(id);
+        if (null == result) {
+            result = ctx.createNode();
+            result.nodeData().setId(id);
+            // until the label is read
+            result.nodeData().setName(makeUnique(id));
+            nodes.put(id, result);
+            parentless.add(result);
+        }
+        return result;
+    }
+
+    private void setParent(String parentId) {
+        if (null == parentId || node.hasParent()) {
+            return;
+        }
+        INode parent = getNode(parentId);
+        // skip superclasses making a cycle
+        for (INode ancestor = parent; null != ancestor; ancestor = ancestor.getParent()) {
+            if (ancestor == node) {
+                log.debug("Skipping cyclic superclass " + parentId + " of " + node.nodeData().getId());
+                return;
+            }
+        }
+        parent.addChild(node);
+        parentless.remove(node);
+    }
+
+    private static String getClassId(Attributes atts) {
+        String result = getReference(atts.getValue(RDF_NS, "about"));
+        if (null == result) {
+            result = atts.getValue(RDF_NS, "ID");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the class id from the class URI, that is the part after #, or null for owl:Thing.
+     *
+     * @param uri class URI
+     * @return class id or null
+     */
+    private static String getReference(String uri) {
+        if (null == uri || OWL_THING.equals(uri)) {
+            return null;
+        }
+        int hash = uri.lastIndexOf('#');
+        return -1 == hash ? uri : uri.substring(hash + 1);
+    }
+}
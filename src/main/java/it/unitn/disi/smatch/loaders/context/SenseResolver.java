@@ -0,0 +1,236 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.ling.ISense;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+import it.unitn.disi.smatch.oracles.LinguisticOracleException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves sense ids into senses for the context loaders. Instead of asking the oracle for each sense
+ * as it is parsed, loaders record the sense ids in a {@link Batch} and resolve them all at the end of
+ * the document. Repeated ids are resolved once and the senses are kept in a cache, which may be shared
+ * by several loaders and resolvers. If an executor is given, the ids are resolved in batches in the
+ * executor while the document is still being parsed.
+ * <p/>
+ * The resolver is thread safe and may be shared, batches are not.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class SenseResolver {
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final ILinguisticOracle oracle;
+    // sense id -> sense
+    private final ConcurrentMap<String, ISense> cache;
+    // resolves batches while parsing, may be null
+    private final ExecutorService executor;
+    private final int batchSize;
+
+    /**
+     * Creates a resolver which resolves senses after parsing, caching them in a cache of its own.
+     *
+     * @param oracle linguistic oracle to create senses
+     */
+    public SenseResolver(ILinguisticOracle oracle) {
+        this(oracle, new ConcurrentHashMap<String, ISense>(), null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param oracle    linguistic oracle to create senses
+     * @param cache     sense id to sense cache, may be shared with other resolvers
+     * @param executor  executor to resolve batches in while parsing, may be null
+     * @param batchSize amount of distinct sense ids in a batch submitted to the executor
+     */
+    public SenseResolver(ILinguisticOracle oracle, ConcurrentMap<String, ISense> cache, ExecutorService executor, int batchSize) {
+        if (null == oracle) {
+            throw new IllegalArgumentException("oracle is null");
+        }
+        if (null == cache) {
+            throw new IllegalArgumentException("cache is null");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.oracle = oracle;
+        this.cache = cache;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    public ILinguisticOracle getOracle() {
+        return oracle;
+    }
+
+    public ConcurrentMap<String, ISense> getCache() {
+        return cache;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Creates a batch for one document.
+     *
+     * @return a new batch
+     */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    private void resolve(List<String> ids) throws LinguisticOracleException {
+        for (String id : ids) {
+            if (!cache.containsKey(id)) {
+                cache.putIfAbsent(id, oracle.createSense(id));
+            }
+        }
+    }
+
+    /**
+     * Returns the sense from the cache, creating it if needed.
+     *
+     * @param id sense id
+     * @return the sense
+     * @throws LinguisticOracleException LinguisticOracleException
+     */
+    public ISense getSense(String id) throws LinguisticOracleException {
+        ISense result = cache.get(id);
+        if (null == result) {
+            result = oracle.createSense(id);
+            ISense cached = cache.putIfAbsent(id, result);
+            if (null != cached) {
+                result = cached;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sense ids of one document with the concepts they belong to. Not thread safe.
+     */
+    public class Batch {
+
+        // concepts and sense ids in the document order
+        private final List<IAtomicConceptOfLabel> acols = new ArrayList<>();
+        private final List<String> ids = new ArrayList<>();
+        // ids seen in this batch, interned to have one string per id
+        private final Map<String, String> seen = new HashMap<>();
+        // distinct ids not submitted yet
+        private List<String> pending = new ArrayList<>();
+        private final List<Future<Void>> submitted = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Records the sense id to be added to the senses of the concept.
+         *
+         * @param acol    atomic concept of label
+         * @param senseId sense id
+         */
+        public void add(IAtomicConceptOfLabel acol, String senseId) {
+            String id = seen.get(senseId);
+            if (null == id) {
+                id = senseId;
+                seen.put(id, id);
+                if (!cache.containsKey(id)) {
+                    pending.add(id);
+                    if (null != executor && batchSize <= pending.size()) {
+                        submit();
+                    }
+                }
+            }
+            acols.add(acol);
+            ids.add(id);
+        }
+
+        /**
+         * Returns the amount of recorded senses.
+         *
+         * @return the amount of recorded senses
+         */
+        public int size() {
+            return ids.size();
+        }
+
+        /**
+         * Resolves the remaining ids, waits for the submitted batches and adds the senses to the concepts
+         * in the order they were recorded.
+         *
+         * @throws LinguisticOracleException LinguisticOracleException
+         * @throws InterruptedException      if interrupted while waiting for the submitted batches
+         */
+        public void resolve() throws LinguisticOracleException, InterruptedException {
+            boolean resolved = false;
+            try {
+                SenseResolver.this.resolve(pending);
+                pending.clear();
+                for (Future<Void> future : submitted) {
+                    future.get();
+                }
+                submitted.clear();
+
+                for (int i = 0; i < ids.size(); i++) {
+                    acols.get(i).getSenses().add(getSense(ids.get(i)));
+                }
+                resolved = true;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LinguisticOracleException) {
+                    throw (LinguisticOracleException) e.getCause();
+                }
+                throw new LinguisticOracleException(e.getCause().getClass().getSimpleName() + ": " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                if (!resolved) {
+                    cancel();
+                }
+                clear();
+            }
+        }
+
+        /**
+         * Cancels the submitted batches and forgets the recorded ids.
+         */
+        public void cancel() {
+            for (Future<Void> future : submitted) {
+                future.cancel(true);
+            }
+            submitted.clear();
+            pending.clear();
+            clear();
+        }
+
+        private void clear() {
+            acols.clear();
+            ids.clear();
+            seen.clear();
+        }
+
+        private void submit() {
+            final List<String> batch = pending;
+            pending = new ArrayList<>();
+            submitted.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws LinguisticOracleException {
+                    SenseResolver.this.resolve(batch);
+                    return null;
+                }
+            }));
+        }
+    }
+}
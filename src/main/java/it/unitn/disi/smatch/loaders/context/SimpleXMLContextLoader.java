@@ -5,20 +5,29 @@ import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
 import it.unitn.disi.smatch.data.trees.Context;
 import it.unitn.disi.smatch.data.trees.IContext;
 import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.loaders.IStringInterner;
 import it.unitn.disi.smatch.oracles.ILinguisticOracle;
-import it.unitn.disi.smatch.oracles.LinguisticOracleException;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
 /**
  * Loader for SimpleXML format.
+ * <p/>
+ * Sense ids are recorded while parsing and resolved by the {@link SenseResolver} at the end of the document.
+ * With lazy senses, concepts keep the sense ids and create the senses on the first access,
+ * see {@link LazyAtomicConceptOfLabel}. Without an oracle, concepts of loaded contexts have no senses,
+ * lazy or not, while streamed nodes keep the sense ids.
+ * <p/>
+ * Nodes can be streamed to a handler with {@link #stream(String, IContextNodeHandler)}, which keeps in memory
+ * only the path to the node being read, instead of the whole context.
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  */
-public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode> implements IContextLoader, IAsyncContextLoader {
+public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode> implements IContextLoader, IInterningContextLoader {
 
     protected final ILinguisticOracle oracle;
 
@@ -29,6 +38,20 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
     // atomic concept being read
     private IAtomicConceptOfLabel acol;
 
+    private SenseResolver senseResolver;
+    private boolean lazySenses;
+    // senses of the document being read
+    private SenseResolver.Batch senses;
+    // whether concepts of the document being read keep sense ids
+    private boolean keepSenseIds;
+    // resolver of the lazy senses of the document being read, may be null
+    private SenseResolver lazyResolver;
+
+    // receives streamed nodes
+    private IContextNodeHandler nodeHandler;
+    // whether the last node of the path is passed to the node handler
+    private boolean lastStarted;
+
     public SimpleXMLContextLoader(ILinguisticOracle linguisticOracle) throws ContextLoaderException {
         super();
         this.oracle = linguisticOracle;
@@ -44,9 +67,78 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
         this.oracle = linguisticOracle;
     }
 
+    public SimpleXMLContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle) {
+        super(interner);
+        this.oracle = linguisticOracle;
+    }
+
+    public SimpleXMLContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle, String location) {
+        super(interner, location);
+        this.oracle = linguisticOracle;
+    }
+
     @Override
     public AsyncTask<IContext, INode> asyncLoad(String location) {
-        return new SimpleXMLContextLoader(isUniqueStrings(), oracle, location);
+        return asyncLoad(location, getInterner());
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location, IStringInterner interner) {
+        SimpleXMLContextLoader result;
+        if (null != interner) {
+            result = new SimpleXMLContextLoader(interner, oracle, location);
+        } else {
+            result = new SimpleXMLContextLoader(isUniqueStrings(), oracle, location);
+        }
+        result.setMetricsListener(metricsListener);
+        result.setSenseResolver(senseResolver);
+        result.setLazySenses(lazySenses);
+        return result;
+    }
+
+    public SenseResolver getSenseResolver() {
+        return senseResolver;
+    }
+
+    /**
+     * Sets the resolver for the senses, which may be shared with other loaders.
+     * If not set, each document gets a resolver of its own.
+     *
+     * @param senseResolver sense resolver, may be null
+     */
+    public void setSenseResolver(SenseResolver senseResolver) {
+        this.senseResolver = senseResolver;
+    }
+
+    public boolean isLazySenses() {
+        return lazySenses;
+    }
+
+    /**
+     * Sets whether to create senses on the first access instead of while loading.
+     *
+     * @param lazySenses whether to create senses on the first access
+     */
+    public void setLazySenses(boolean lazySenses) {
+        this.lazySenses = lazySenses;
+    }
+
+    /**
+     * Streams nodes from the context file to the handler without loading the whole context. Senses are kept
+     * as ids, see {@link LazyAtomicConceptOfLabel}. The file should have one root.
+     *
+     * @param location context file
+     * @param handler  node handler
+     * @return false, if streaming was interrupted
+     * @throws ContextLoaderException ContextLoaderException
+     */
+    public boolean stream(String location, IContextNodeHandler handler) throws ContextLoaderException {
+        nodeHandler = handler;
+        try {
+            return null != loadContext(location);
+        } finally {
+            nodeHandler = null;
+        }
     }
 
     // content handler methods
@@ -55,6 +147,25 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
         super.startDocument();
         ctx = new Context();
         pathToRoot.clear();
+        if (null != senses) {
+            // left from an interrupted or failed document
+            senses.cancel();
+        }
+        SenseResolver resolver = senseResolver;
+        if (null == resolver && null != oracle) {
+            resolver = new SenseResolver(oracle);
+        }
+        lastStarted = false;
+        // streamed nodes keep the ids for the renderers even without an oracle,
+        // loaded contexts without an oracle get ordinary concepts without senses
+        keepSenseIds = null != nodeHandler || (lazySenses && null != resolver);
+        if (keepSenseIds) {
+            lazyResolver = resolver;
+            senses = null;
+        } else {
+            lazyResolver = null;
+            senses = null == resolver ? null : resolver.newBatch();
+        }
     }
 
     @Override
@@ -62,6 +173,9 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
         super.startElement(namespace, localName, qName, atts);
         switch (localName) {
             case "node":
+                if (null != nodeHandler) {
+                    releaseLastChild();
+                }
                 INode node;
                 if (null == ctx.getRoot()) {
                     node = ctx.createRoot();
@@ -79,21 +193,30 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
                 node.nodeData().setId(atts.getValue("id"));
                 node.nodeData().setIsPreprocessed(-1 < atts.getIndex("", "preprocessed"));
                 pathToRoot.addLast(node);
+                if (null != nodeHandler) {
+                    startParent(node);
+                }
                 break;
             case "token":
-                acol = pathToRoot.getLast().nodeData().createConcept();
+                if (keepSenseIds) {
+                    acol = new LazyAtomicConceptOfLabel(lazyResolver);
+                } else {
+                    acol = pathToRoot.getLast().nodeData().createConcept();
+                }
                 acol.setId(Integer.parseInt(atts.getValue("id")));
                 break;
             case "sense":
-                if (null != oracle) {
-                    try {
-                        if (-1 == atts.getIndex("pos")) {
-                                acol.getSenses().add(oracle.createSense(atts.getValue("id")));
-                        } else {
-                                acol.getSenses().add(oracle.createSense(atts.getValue("pos") + "#" + atts.getValue("id")));
-                        }
-                    } catch (LinguisticOracleException e) {
-                        throw new RuntimeException(e.getMessage(), e);
+                if (null != senses || keepSenseIds) {
+                    String id;
+                    if (-1 == atts.getIndex("pos")) {
+                        id = atts.getValue("id");
+                    } else {
+                        id = atts.getValue("pos") + "#" + atts.getValue("id");
+                    }
+                    if (keepSenseIds) {
+                        ((LazyAtomicConceptOfLabel) acol).addSenseId(makeUnique(id));
+                    } else {
+                        senses.add(acol, id);
                     }
                 }
                 break;
@@ -129,9 +252,12 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
                 pathToRoot.getLast().nodeData().getConcepts().add(acol);
                 break;
             case "node":
+                if (null != nodeHandler) {
+                    endLast();
+                }
                 pathToRoot.removeLast();
 
-                progress();
+                countNode();
                 break;
         }
     }
@@ -140,5 +266,62 @@ public class SimpleXMLContextLoader extends BaseXMLContextLoader<IContext, INode
     public void endDocument() throws SAXException {
         super.endDocument();
         pathToRoot.clear();
+        lazyResolver = null;
+        SenseResolver.Batch batch = senses;
+        senses = null;
+        resolveSenses(batch);
+    }
+
+    /**
+     * Removes the previous sibling of the node being started, so that only the path is kept.
+     *
+     * @throws SAXException if there are several roots
+     */
+    private void releaseLastChild() throws SAXException {
+        if (!pathToRoot.isEmpty()) {
+            INode parent = pathToRoot.getLast();
+            if (0 < parent.getChildCount()) {
+                parent.removeChild(parent.getChildCount() - 1);
+            }
+        } else if (null != ctx.getRoot()) {
+            throw new SAXException("Contexts with several roots cannot be streamed");
+        }
+    }
+
+    /**
+     * Passes the parent of the node to the handler, if it has not been passed yet. The parent data is read
+     * by now, and it has a child.
+     *
+     * @param node node being started
+     * @throws SAXException SAXException
+     */
+    private void startParent(INode node) throws SAXException {
+        try {
+            if (node.hasParent() && !lastStarted) {
+                nodeHandler.startNode(node.getParent());
+            }
+            lastStarted = false;
+        } catch (IOException e) {
+            throw new SAXException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Passes the end of the last node of the path to the handler, starting it first, if it has no children.
+     *
+     * @throws SAXException SAXException
+     */
+    private void endLast() throws SAXException {
+        try {
+            INode node = pathToRoot.getLast();
+            if (!lastStarted) {
+                nodeHandler.startNode(node);
+            }
+            nodeHandler.endNode(node);
+            // the parent was started together with its first child
+            lastStarted = true;
+        } catch (IOException e) {
+            throw new SAXException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
     }
 }
\ No newline at end of file
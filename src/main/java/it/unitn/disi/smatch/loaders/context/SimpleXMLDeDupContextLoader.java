@@ -1,21 +1,33 @@
 package it.unitn.disi.smatch.loaders.context;
 
+import it.unitn.disi.smatch.async.AsyncTask;
 import it.unitn.disi.smatch.data.trees.IContext;
 import it.unitn.disi.smatch.data.trees.INode;
-import it.unitn.disi.smatch.data.trees.Node;
+import it.unitn.disi.smatch.io.Parallelism;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
 import it.unitn.disi.smatch.oracles.ILinguisticOracle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Loader for XML format. Check whether there are duplicates among siblings and leaves only ones of them
  * consolidating children.
+ * <p/>
+ * The first of the siblings with the same name is kept and the children of the others are appended to its
+ * children, which are checked in turn. Siblings are checked with a hash table, so the check takes linear time.
+ * Optionally, independent subtrees are checked in parallel.
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  */
@@ -23,12 +35,68 @@ public class SimpleXMLDeDupContextLoader extends SimpleXMLContextLoader {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleXMLDeDupContextLoader.class);
 
+    // subtrees with fewer children are checked in the current thread
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    // how many threads check subtrees, 1 for checking in the loading thread
+    private final int parallelism;
+
     public SimpleXMLDeDupContextLoader(ILinguisticOracle linguisticOracle) throws ContextLoaderException {
         super(linguisticOracle);
+        this.parallelism = 1;
     }
 
     public SimpleXMLDeDupContextLoader(boolean uniqueStrings, ILinguisticOracle linguisticOracle) throws ContextLoaderException {
         super(uniqueStrings, linguisticOracle);
+        this.parallelism = 1;
+    }
+
+    /**
+     * @param uniqueStrings    whether to make node names unique
+     * @param linguisticOracle linguistic oracle to create senses, may be null
+     * @param parallelism      how many threads check subtrees for duplicates
+     */
+    public SimpleXMLDeDupContextLoader(boolean uniqueStrings, ILinguisticOracle linguisticOracle, int parallelism) {
+        super(uniqueStrings, linguisticOracle);
+        this.parallelism = Parallelism.check(parallelism);
+    }
+
+    public SimpleXMLDeDupContextLoader(boolean uniqueStrings, ILinguisticOracle linguisticOracle, int parallelism, String location) {
+        super(uniqueStrings, linguisticOracle, location);
+        this.parallelism = Parallelism.check(parallelism);
+    }
+
+    public SimpleXMLDeDupContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle) throws ContextLoaderException {
+        super(interner, linguisticOracle);
+        this.parallelism = 1;
+    }
+
+    public SimpleXMLDeDupContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle, int parallelism) {
+        super(interner, linguisticOracle);
+        this.parallelism = Parallelism.check(parallelism);
+    }
+
+    public SimpleXMLDeDupContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle, int parallelism, String location) {
+        super(interner, linguisticOracle, location);
+        this.parallelism = Parallelism.check(parallelism);
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location, IStringInterner interner) {
+        SimpleXMLDeDupContextLoader result;
+        if (null != interner) {
+            result = new SimpleXMLDeDupContextLoader(interner, oracle, parallelism, location);
+        } else {
+            result = new SimpleXMLDeDupContextLoader(isUniqueStrings(), oracle, parallelism, location);
+        }
+        result.setMetricsListener(metricsListener);
+        result.setSenseResolver(getSenseResolver());
+        result.setLazySenses(isLazySenses());
+        return result;
+    }
+
+    public int getParallelism() {
+        return parallelism;
     }
 
     @Override
@@ -37,71 +105,150 @@ public class SimpleXMLDeDupContextLoader extends SimpleXMLContextLoader {
 
         if (null != result) {
             log.info("Checking sibling duplicates...");
-            //checking for duplicates among siblings
-            int duplicatesRemoved = 0;
-
-            ArrayList<INode> nodeQ = new ArrayList<>();
-            nodeQ.add(result.getRoot());
-            INode curNode;
-            while (!nodeQ.isEmpty()) {
-                if (Thread.currentThread().isInterrupted()) {
-                    return null;
-                }
-                curNode = nodeQ.remove(0);
-                if (null == curNode) {
-                    //go up
-                } else {
-                    List<INode> children = new ArrayList<>(curNode.getChildren());
-                    Collections.sort(children, Node.NODE_NAME_COMPARATOR);
-                    int idx = 1;
-                    while (idx < children.size()) {
-                        if (children.get(idx - 1).nodeData().getName().equals(children.get(idx).nodeData().getName())) {
-                            log.info("Found duplicate: " + children.get(idx).nodeData().getName());
-                            moveChildren(children.get(idx), children.get(idx - 1));
-                            curNode.removeChild(children.get(idx));
-                            children.remove(idx);
-                            duplicatesRemoved++;
-                        } else {
-                            idx++;
-                        }
-                    }
-
-                    progress();
-
-                    if (curNode.getChildCount() > 0) {
-                        //go down
-                        nodeQ.add(0, null);
-                        //adding to the top of the queue
-                        List<INode> childList = curNode.getChildren();
-                        for (int i = childList.size() - 1; i >= 0; i--) {
-                            nodeQ.add(0, childList.get(i));
-                        }
-                    }
-                }
+            PhaseTimer dedup = startPhase("dedup");
+            int duplicatesRemoved;
+            if (1 < parallelism) {
+                duplicatesRemoved = removeDuplicatesInParallel(result.getRoot());
+            } else {
+                duplicatesRemoved = removeDuplicates(result.getRoot(), Thread.currentThread(), true);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
             }
 
+            dedup.stop(duplicatesRemoved, -1);
             log.info("Duplicates removed: " + duplicatesRemoved);
         }
 
         return result;
     }
 
+    /**
+     * Removes sibling duplicates in the subtree.
+     *
+     * @param root           subtree root
+     * @param loader         loading thread, whose interruption stops the check
+     * @param reportProgress whether to report progress for each checked node
+     * @return how many duplicates are removed
+     */
+    private int removeDuplicates(INode root, Thread loader, boolean reportProgress) {
+        int result = 0;
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        nodeStack.push(root);
+        while (!nodeStack.isEmpty()) {
+            if (loader.isInterrupted()) {
+                break;
+            }
+            INode curNode = nodeStack.pop();
+            result += removeDuplicateChildren(curNode);
+            if (reportProgress) {
+                progress();
+            }
+            for (int i = curNode.getChildCount() - 1; 0 <= i; i--) {
+                nodeStack.push(curNode.getChildAt(i));
+            }
+        }
+        return result;
+    }
+
+    private int removeDuplicatesInParallel(INode root) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // workers check the loading thread, their own interruption flags are not set when it is interrupted
+            return pool.invoke(new DeDupTask(root, Thread.currentThread()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks the subtree: small subtrees are checked in one go, in large ones the children of the root
+     * are checked as separate tasks.
+     */
+    private class DeDupTask extends RecursiveTask<Integer> {
+
+        private final INode root;
+        private final Thread loader;
+
+        private DeDupTask(INode root, Thread loader) {
+            this.root = root;
+            this.loader = loader;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (loader.isInterrupted()) {
+                return 0;
+            }
+            int result = removeDuplicateChildren(root);
+            if (root.getChildCount() < PARALLEL_THRESHOLD) {
+                for (int i = 0; i < root.getChildCount(); i++) {
+                    result += removeDuplicates(root.getChildAt(i), loader, false);
+                }
+            } else {
+                List<DeDupTask> tasks = new ArrayList<>(root.getChildCount());
+                for (int i = 0; i < root.getChildCount(); i++) {
+                    tasks.add(new DeDupTask(root.getChildAt(i), loader));
+                }
+                invokeAll(tasks);
+                for (DeDupTask task : tasks) {
+                    result += task.join();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Merges children of the node with the same name into the first one of them.
+     *
+     * @param node node
+     * @return how many children are removed
+     */
+    private static int removeDuplicateChildren(INode node) {
+        final int childCount = node.getChildCount();
+        if (childCount < 2) {
+            return 0;
+        }
+        Map<String, INode> firstByName = new HashMap<>(childCount * 4 / 3 + 1);
+        List<Integer> duplicates = null;
+        for (int i = 0; i < childCount; i++) {
+            INode child = node.getChildAt(i);
+            String name = child.nodeData().getName();
+            INode first = firstByName.get(name);
+            if (null == first) {
+                firstByName.put(name, child);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Found duplicate: " + name);
+                }
+                moveChildren(child, first);
+                if (null == duplicates) {
+                    duplicates = new ArrayList<>();
+                }
+                duplicates.add(i);
+            }
+        }
+        if (null == duplicates) {
+            return 0;
+        }
+        // from the end, to keep indexes valid and to move less
+        for (int i = duplicates.size() - 1; 0 <= i; i--) {
+            node.removeChild(duplicates.get(i).intValue());
+        }
+        return duplicates.size();
+    }
+
     /**
      * Move children from <var>source</var> to <var>target</var>.
      *
      * @param source source node
      * @param target target node
      */
-    private void moveChildren(INode source, INode target) {
+    private static void moveChildren(INode source, INode target) {
         List<INode> children = new ArrayList<>(source.getChildren());
-        while (0 < children.size()) {
-            INode child = children.remove(0);
-            int idx = target.getChildIndex(child);
-            if (-1 == idx) {
-                target.addChild(child);
-            } else {
-                moveChildren(child, target.getChildAt(idx));
-            }
+        for (INode child : children) {
+            target.addChild(child);
         }
     }
-}
\ No newline at end of file
+}
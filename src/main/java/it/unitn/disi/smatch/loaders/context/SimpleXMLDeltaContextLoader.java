@@ -0,0 +1,493 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.trees.Context;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.data.trees.INodeData;
+import it.unitn.disi.smatch.io.SenseIds;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+import it.unitn.disi.smatch.loaders.mapping.NodeIdIndex;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies changes to a previously loaded context, reporting ids of changed nodes, see {@link ContextDelta}.
+ * Unchanged nodes are kept as they are, so that the results computed for them remain valid.
+ * <p/>
+ * The changes are read either from a new snapshot of the context in SimpleXML format, which is compared
+ * with the context by node ids, or from a delta file, which lists the changes only:
+ * <pre>
+ * &lt;delta&gt;
+ *   &lt;remove id="n5"/&gt;
+ *   &lt;add parent-id="n1" index="0"&gt;
+ *     &lt;node id="n9"&gt;...&lt;/node&gt;
+ *   &lt;/add&gt;
+ *   &lt;update id="n7" parent-id="n2" index="1"&gt;
+ *     &lt;node id="n7"&gt;...&lt;/node&gt;
+ *   &lt;/update&gt;
+ * &lt;/delta&gt;
+ * </pre>
+ * Nodes are written as in SimpleXML format. Add appends the nodes with their subtrees to the parent or
+ * inserts them at the index. Remove removes the node with its subtree. Update replaces the node data
+ * with the data of the node element, if present, without changing the children, and moves the node,
+ * if the parent or the index is given. Changes are applied in the file order.
+ * <p/>
+ * Applying a delta file takes time proportional to the delta, apart from building the node id index
+ * of the context, which is cached, see {@link NodeIdIndex}.
+ * <p/>
+ * Delta files are applied as they are parsed, therefore if applying one is interrupted or fails, for example,
+ * on a missing node, the changes before that point remain applied and the context is partly changed.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class SimpleXMLDeltaContextLoader extends SimpleXMLContextLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(SimpleXMLDeltaContextLoader.class);
+
+    // context to apply changes to
+    private IContext target;
+    // whether the document is a delta file
+    private boolean isDelta;
+    private NodeIdIndex index;
+    // nodes added by the delta file
+    private final Map<String, INode> addedNodes = new HashMap<>();
+    private Set<String> addedIds;
+    private Set<String> removedIds;
+    private Set<String> updatedIds;
+
+    // add being read
+    private INode addParent;
+    private int addStart;
+    private int addIndex;
+    // update being read
+    private INode updateNode;
+    private INode scratchRoot;
+
+    public SimpleXMLDeltaContextLoader(ILinguisticOracle linguisticOracle) throws ContextLoaderException {
+        super(linguisticOracle);
+    }
+
+    public SimpleXMLDeltaContextLoader(boolean uniqueStrings, ILinguisticOracle linguisticOracle) {
+        super(uniqueStrings, linguisticOracle);
+    }
+
+    public SimpleXMLDeltaContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle) {
+        super(interner, linguisticOracle);
+    }
+
+    /**
+     * Applies the changes from the snapshot or delta file to the context.
+     *
+     * @param context  previously loaded context, changed in place
+     * @param location snapshot or delta file
+     * @return the changes, or null, if interrupted, then the context may be partly changed
+     * @throws ContextLoaderException if loading fails, then the context may be partly changed
+     */
+    public ContextDelta loadDelta(IContext context, String location) throws ContextLoaderException {
+        boolean complete = false;
+        target = context;
+        isDelta = false;
+        addedIds = new LinkedHashSet<>();
+        removedIds = new LinkedHashSet<>();
+        updatedIds = new LinkedHashSet<>();
+        try {
+            IContext loaded = loadContext(location);
+            if (null == loaded) {
+                // interrupted
+                return null;
+            }
+            if (!isDelta) {
+                applySnapshot(loaded);
+            }
+            if (!addedIds.isEmpty() || !removedIds.isEmpty() || !updatedIds.isEmpty()) {
+                NodeIdIndex.invalidate(target);
+            }
+            ContextDelta result = new ContextDelta(target, addedIds, removedIds, updatedIds);
+            log.info("Applied changes: " + result);
+            complete = true;
+            return result;
+        } finally {
+            if (!complete) {
+                // the cached index may map ids to removed or moved nodes of a partly changed context
+                NodeIdIndex.invalidate(target);
+            }
+            target = null;
+            index = null;
+            addedNodes.clear();
+            addedIds = null;
+            removedIds = null;
+            updatedIds = null;
+        }
+    }
+
+    // content handler methods
+    @Override
+    public void startDocument() throws SAXException {
+        super.startDocument();
+        isDelta = false;
+        addParent = null;
+        updateNode = null;
+    }
+
+    @Override
+    public void startElement(String namespace, String localName, String qName, Attributes atts) throws SAXException {
+        if (!isDelta) {
+            if ("delta".equals(localName) && null == ctx.getRoot() && pathToRoot.isEmpty()) {
+                if (null == target) {
+                    throw new SAXException("Delta file can only be applied to a context");
+                }
+                isDelta = true;
+                ctx = target;
+                index = NodeIdIndex.forContext(target);
+                scratchRoot = new Context().createRoot();
+            }
+            super.startElement(namespace, localName, qName, atts);
+            return;
+        }
+
+        switch (localName) {
+            case "add":
+                addParent = findNode(getRequired(atts, "parent-id"));
+                addStart = addParent.getChildCount();
+                addIndex = parseIndex(atts, addStart);
+                pathToRoot.addLast(addParent);
+                break;
+            case "remove":
+                remove(findNode(getRequired(atts, "id")));
+                break;
+            case "update":
+                updateNode = findNode(getRequired(atts, "id"));
+                String parentId = atts.getValue("parent-id");
+                move(updateNode, null == parentId ? updateNode.getParent() : findNode(parentId), atts);
+                pathToRoot.addLast(scratchRoot);
+                break;
+            case "node":
+                if (pathToRoot.isEmpty()) {
+                    throw new SAXException("Node outside add or update: " + atts.getValue("id"));
+                }
+                break;
+        }
+        super.startElement(namespace, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (isDelta) {
+            switch (localName) {
+                case "node":
+                    if (null != addParent) {
+                        INode node = pathToRoot.getLast();
+                        String id = node.nodeData().getId();
+                        if (null != findNodeOrNull(id)) {
+                            throw new SAXException("Node already exists: " + id);
+                        }
+                        addedNodes.put(id, node);
+                        removedIds.remove(id);
+                        addedIds.add(id);
+                    }
+                    break;
+                case "add":
+                    pathToRoot.removeLast();
+                    if (addStart < addParent.getChildCount()) {
+                        if (0 <= addIndex) {
+                            for (int i = addStart; i < addParent.getChildCount(); i++) {
+                                INode child = addParent.getChildAt(i);
+                                addParent.removeChild(i);
+                                addParent.addChild(addIndex + i - addStart, child);
+                            }
+                        }
+                        markUpdated(addParent.nodeData().getId());
+                    }
+                    addParent = null;
+                    break;
+                case "update":
+                    pathToRoot.removeLast();
+                    if (0 < scratchRoot.getChildCount()) {
+                        INode data = scratchRoot.getChildAt(0);
+                        if (!sameData(data.nodeData(), updateNode.nodeData())) {
+                            copyData(data.nodeData(), updateNode.nodeData());
+                            markUpdated(updateNode.nodeData().getId());
+                        }
+                        while (0 < scratchRoot.getChildCount()) {
+                            scratchRoot.removeChild(scratchRoot.getChildCount() - 1);
+                        }
+                    }
+                    updateNode = null;
+                    break;
+            }
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    private INode findNode(String id) throws SAXException {
+        INode result = findNodeOrNull(id);
+        if (null == result) {
+            throw new SAXException("Node not found: " + id);
+        }
+        return result;
+    }
+
+    private INode findNodeOrNull(String id) {
+        INode result = addedNodes.get(id);
+        if (null == result && !removedIds.contains(id)) {
+            result = index.get(id);
+        }
+        return result;
+    }
+
+    private static String getRequired(Attributes atts, String name) throws SAXException {
+        String result = atts.getValue(name);
+        if (null == result) {
+            throw new SAXException("Missing " + name + " attribute");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the child index from the index attribute, or -1, if there is none.
+     *
+     * @param atts     attributes
+     * @param maxIndex the largest valid index
+     * @return child index or -1
+     * @throws SAXException if the index is not a number or out of range
+     */
+    private static int parseIndex(Attributes atts, int maxIndex) throws SAXException {
+        String index = atts.getValue("index");
+        if (null == index) {
+            return -1;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            throw new SAXException("Invalid index: " + index, e);
+        }
+        if (result < 0 || maxIndex < result) {
+            throw new SAXException("Index out of range [0, " + maxIndex + "]: " + index);
+        }
+        return result;
+    }
+
+    private void remove(INode node) throws SAXException {
+        if (!node.hasParent()) {
+            throw new SAXException("Cannot remove the root: " + node.nodeData().getId());
+        }
+        INode parent = node.getParent();
+        parent.removeChild(node);
+        markUpdated(parent.nodeData().getId());
+        markRemoved(node);
+        for (Iterator<INode> i = node.descendantsIterator(); i.hasNext(); ) {
+            markRemoved(i.next());
+        }
+    }
+
+    private void markRemoved(INode node) {
+        String id = node.nodeData().getId();
+        if (null == addedNodes.remove(id)) {
+            removedIds.add(id);
+        }
+        addedIds.remove(id);
+        updatedIds.remove(id);
+    }
+
+    private void markUpdated(String id) {
+        if (!addedIds.contains(id)) {
+            updatedIds.add(id);
+        }
+    }
+
+    private void move(INode node, INode parent, Attributes atts) throws SAXException {
+        // the index is taken after the node is removed from its old place
+        int maxIndex = null == parent ? 0 : parent.getChildCount() - (node.getParent() == parent ? 1 : 0);
+        int childIndex = parseIndex(atts, maxIndex);
+        if (null == parent || !node.hasParent()) {
+            if (node.getParent() == parent && childIndex < 0) {
+                return;
+            }
+            throw new SAXException("Cannot move the root: " + node.nodeData().getId());
+        }
+        if (node.getParent() == parent
+                && (childIndex < 0 || (childIndex < parent.getChildCount() && parent.getChildAt(childIndex) == node))) {
+            return;
+        }
+        for (INode ancestor = parent; null != ancestor; ancestor = ancestor.getParent()) {
+            if (ancestor == node) {
+                throw new SAXException("Cannot move a node under itself: " + node.nodeData().getId());
+            }
+        }
+        INode oldParent = node.getParent();
+        oldParent.removeChild(node);
+        if (0 <= childIndex) {
+            parent.addChild(childIndex, node);
+        } else {
+            parent.addChild(node);
+        }
+        markUpdated(oldParent.nodeData().getId());
+        markUpdated(parent.nodeData().getId());
+        markUpdated(node.nodeData().getId());
+    }
+
+    /**
+     * Changes the target context to match the snapshot.
+     *
+     * @param snapshot new snapshot of the context
+     */
+    private void applySnapshot(IContext snapshot) {
+        if (null == target.getRoot()) {
+            for (Iterator<INode> i = snapshot.nodeIterator(); i.hasNext(); ) {
+                addedIds.add(i.next().nodeData().getId());
+            }
+            target.setRoot(snapshot.getRoot());
+            return;
+        }
+
+        // id -> target node, including the nodes created for the snapshot
+        Map<String, INode> nodes = new HashMap<>();
+        for (Iterator<INode> i = target.nodeIterator(); i.hasNext(); ) {
+            INode node = i.next();
+            nodes.put(node.nodeData().getId(), node);
+        }
+        Set<String> oldIds = new LinkedHashSet<>(nodes.keySet());
+
+        // pre-order, so that parents are in place before their children
+        List<INode> snapshotNodes = new ArrayList<>();
+        Deque<INode> stack = new ArrayDeque<>();
+        stack.push(snapshot.getRoot());
+        while (!stack.isEmpty()) {
+            INode node = stack.pop();
+            snapshotNodes.add(node);
+            for (int i = node.getChildCount() - 1; 0 <= i; i--) {
+                stack.push(node.getChildAt(i));
+            }
+        }
+
+        for (INode node : snapshotNodes) {
+            String id = node.nodeData().getId();
+            INode parent = node.hasParent() ? nodes.get(node.getParent().nodeData().getId()) : null;
+            INode targetNode = nodes.get(id);
+            if (null == targetNode) {
+                targetNode = target.createNode();
+                targetNode.nodeData().setId(id);
+                copyData(node.nodeData(), targetNode.nodeData());
+                if (null != parent) {
+                    parent.addChild(targetNode);
+                }
+                nodes.put(id, targetNode);
+                addedIds.add(id);
+            } else {
+                oldIds.remove(id);
+                if (!sameData(node.nodeData(), targetNode.nodeData())) {
+                    copyData(node.nodeData(), targetNode.nodeData());
+                    updatedIds.add(id);
+                }
+                if (targetNode.getParent() != parent) {
+                    if (targetNode.hasParent()) {
+                        targetNode.getParent().removeChild(targetNode);
+                    }
+                    if (null != parent) {
+                        parent.addChild(targetNode);
+                    }
+                    updatedIds.add(id);
+                }
+            }
+        }
+
+        // nodes missing from the snapshot
+        for (String id : oldIds) {
+            INode node = nodes.get(id);
+            if (node.hasParent() && !oldIds.contains(node.getParent().nodeData().getId())) {
+                node.getParent().removeChild(node);
+            }
+            removedIds.add(id);
+        }
+
+        // children order
+        for (INode node : snapshotNodes) {
+            INode targetNode = nodes.get(node.nodeData().getId());
+            if (!sameChildren(node, targetNode)) {
+                while (0 < targetNode.getChildCount()) {
+                    targetNode.removeChild(targetNode.getChildCount() - 1);
+                }
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    targetNode.addChild(nodes.get(node.getChildAt(i).nodeData().getId()));
+                }
+                String id = node.nodeData().getId();
+                if (!addedIds.contains(id)) {
+                    updatedIds.add(id);
+                }
+            }
+        }
+
+        INode root = nodes.get(snapshot.getRoot().nodeData().getId());
+        if (target.getRoot() != root) {
+            target.setRoot(root);
+        }
+    }
+
+    private static boolean sameChildren(INode node, INode targetNode) {
+        if (node.getChildCount() != targetNode.getChildCount()) {
+            return false;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!equal(node.getChildAt(i).nodeData().getId(), targetNode.getChildAt(i).nodeData().getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameData(INodeData a, INodeData b) {
+        if (!equal(a.getName(), b.getName())
+                || !equal(a.getLabelFormula(), b.getLabelFormula())
+                || !equal(a.getNodeFormula(), b.getNodeFormula())
+                || !equal(a.getProvenance(), b.getProvenance())
+                || a.getIsPreprocessed() != b.getIsPreprocessed()
+                || a.getConcepts().size() != b.getConcepts().size()) {
+            return false;
+        }
+        for (int i = 0; i < a.getConcepts().size(); i++) {
+            IAtomicConceptOfLabel aAcol = a.getConcepts().get(i);
+            IAtomicConceptOfLabel bAcol = b.getConcepts().get(i);
+            if (aAcol.getId() != bAcol.getId()
+                    || !equal(aAcol.getToken(), bAcol.getToken())
+                    || !equal(aAcol.getLemma(), bAcol.getLemma())
+                    || SenseIds.getSenseCount(aAcol) != SenseIds.getSenseCount(bAcol)) {
+                return false;
+            }
+            for (int j = SenseIds.getSenseCount(aAcol) - 1; j >= 0; j--) {
+                if (!equal(SenseIds.getSenseId(aAcol, j), SenseIds.getSenseId(bAcol, j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void copyData(INodeData source, INodeData target) {
+        target.setName(source.getName());
+        target.setLabelFormula(source.getLabelFormula());
+        target.setNodeFormula(source.getNodeFormula());
+        target.setProvenance(source.getProvenance());
+        target.setIsPreprocessed(source.getIsPreprocessed());
+        target.getConcepts().clear();
+        target.getConcepts().addAll(source.getConcepts());
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return null == a ? null == b : a.equals(b);
+    }
+}
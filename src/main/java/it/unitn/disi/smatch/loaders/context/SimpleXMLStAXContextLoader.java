@@ -0,0 +1,260 @@
+package it.unitn.disi.smatch.loaders.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.trees.Context;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.loaders.IStringInterner;
+import it.unitn.disi.smatch.oracles.ILinguisticOracle;
+import it.unitn.disi.smatch.oracles.LinguisticOracleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loader for SimpleXML format based on a pull (StAX) parser. Builds the same context as
+ * {@link SimpleXMLContextLoader}, but avoids the SAX callback chain and checks for interruption
+ * once per batch of nodes instead of once per parser event.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class SimpleXMLStAXContextLoader extends BaseFileContextLoader<IContext, INode> implements IContextLoader, IInterningContextLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(SimpleXMLStAXContextLoader.class);
+
+    // how many nodes are loaded between interruption checks and progress updates
+    private static final int NODES_PER_BATCH = 1024;
+
+    private static final XMLInputFactory factory;
+
+    static {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+
+    private final ILinguisticOracle oracle;
+    private final boolean uniqueStrings;
+    // shared interner, if null and uniqueStrings, strings are made unique within one document
+    private final IStringInterner interner;
+    private final Map<String, String> unique = new HashMap<>();
+
+    public SimpleXMLStAXContextLoader(ILinguisticOracle linguisticOracle) {
+        this(false, linguisticOracle);
+    }
+
+    /**
+     * @param uniqueStrings    whether to make node names unique.
+     * @param linguisticOracle linguistic oracle to create senses, may be null
+     */
+    public SimpleXMLStAXContextLoader(boolean uniqueStrings, ILinguisticOracle linguisticOracle) {
+        super();
+        this.uniqueStrings = uniqueStrings;
+        this.interner = null;
+        this.oracle = linguisticOracle;
+    }
+
+    public SimpleXMLStAXContextLoader(boolean uniqueStrings, ILinguisticOracle linguisticOracle, String location) {
+        super(location);
+        this.uniqueStrings = uniqueStrings;
+        this.interner = null;
+        this.oracle = linguisticOracle;
+    }
+
+    /**
+     * @param interner         interner to make strings unique, may be shared with other loaders
+     * @param linguisticOracle linguistic oracle to create senses, may be null
+     */
+    public SimpleXMLStAXContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle) {
+        super();
+        this.uniqueStrings = null != interner;
+        this.interner = interner;
+        this.oracle = linguisticOracle;
+    }
+
+    public SimpleXMLStAXContextLoader(IStringInterner interner, ILinguisticOracle linguisticOracle, String location) {
+        super(location);
+        this.uniqueStrings = null != interner;
+        this.interner = interner;
+        this.oracle = linguisticOracle;
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location) {
+        return asyncLoad(location, this.interner);
+    }
+
+    @Override
+    public AsyncTask<IContext, INode> asyncLoad(String location, IStringInterner interner) {
+        if (null != interner) {
+            return new SimpleXMLStAXContextLoader(interner, oracle, location);
+        }
+        return new SimpleXMLStAXContextLoader(uniqueStrings, oracle, location);
+    }
+
+    /**
+     * Whether to make node names unique.
+     * Saves memory in case of contexts with highly repetitive node names.
+     *
+     * @return true if to make node names unique.
+     */
+    public boolean isUniqueStrings() {
+        return uniqueStrings;
+    }
+
+    @Override
+    public IContext loadContext(String location) throws ContextLoaderException {
+        try {
+            BufferedReader input = CompressedStreams.openReader(location);
+            try {
+                IContext result = process(input);
+                createIds(result);
+                return result;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new ContextLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void createIds(IContext result) {
+        //ids should be already in XML
+    }
+
+    @Override
+    protected IContext process(BufferedReader input) throws IOException, ContextLoaderException {
+        unique.clear();
+        setProgress(0);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                return parse(reader);
+            } finally {
+                reader.close();
+                unique.clear();
+            }
+        } catch (XMLStreamException | LinguisticOracleException e) {
+            throw new ContextLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private IContext parse(XMLStreamReader reader) throws XMLStreamException, LinguisticOracleException {
+        IContext ctx = new Context();
+        Deque<INode> pathToRoot = new ArrayDeque<>();
+        IAtomicConceptOfLabel acol = null;
+        long nodeCount = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (XMLStreamConstants.START_ELEMENT == event) {
+                switch (reader.getLocalName()) {
+                    case "node":
+                        INode node;
+                        if (null == ctx.getRoot()) {
+                            node = ctx.createRoot();
+                        } else {
+                            if (0 < pathToRoot.size()) {
+                                node = pathToRoot.getLast().createChild();
+                            } else {
+                                // looks like there are multiple roots
+                                INode oldRoot = ctx.getRoot();
+                                INode newRoot = ctx.createRoot("Top");
+                                newRoot.addChild(oldRoot);
+                                node = newRoot.createChild();
+                            }
+                        }
+                        node.nodeData().setId(reader.getAttributeValue(null, "id"));
+                        node.nodeData().setIsPreprocessed(null != reader.getAttributeValue(null, "preprocessed"));
+                        pathToRoot.addLast(node);
+                        break;
+                    case "name":
+                        pathToRoot.getLast().nodeData().setName(makeUnique(reader.getElementText()));
+                        break;
+                    case "label-formula":
+                        pathToRoot.getLast().nodeData().setLabelFormula(reader.getElementText());
+                        break;
+                    case "node-formula":
+                        pathToRoot.getLast().nodeData().setNodeFormula(reader.getElementText());
+                        break;
+                    case "provenance":
+                        pathToRoot.getLast().nodeData().setProvenance(reader.getElementText());
+                        break;
+                    case "token":
+                        acol = pathToRoot.getLast().nodeData().createConcept();
+                        acol.setId(Integer.parseInt(reader.getAttributeValue(null, "id")));
+                        break;
+                    case "text":
+                        acol.setToken(makeUnique(reader.getElementText()));
+                        break;
+                    case "lemma":
+                        acol.setLemma(makeUnique(reader.getElementText()));
+                        break;
+                    case "sense":
+                        if (null != oracle) {
+                            String pos = reader.getAttributeValue(null, "pos");
+                            if (null == pos) {
+                                acol.getSenses().add(oracle.createSense(reader.getAttributeValue(null, "id")));
+                            } else {
+                                acol.getSenses().add(oracle.createSense(pos + "#" + reader.getAttributeValue(null, "id")));
+                            }
+                        }
+                        break;
+                }
+            } else if (XMLStreamConstants.END_ELEMENT == event) {
+                switch (reader.getLocalName()) {
+                    case "token":
+                        pathToRoot.getLast().nodeData().getConcepts().add(acol);
+                        break;
+                    case "node":
+                        pathToRoot.removeLast();
+                        nodeCount++;
+                        if (0 == nodeCount % NODES_PER_BATCH) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return null;
+                            }
+                            setProgress(nodeCount);
+                        }
+                        break;
+                }
+            }
+        }
+
+        setProgress(nodeCount);
+        log.info("Parsed nodes: " + nodeCount);
+        return ctx;
+    }
+
+    private String makeUnique(String s) {
+        if (null != interner) {
+            return interner.intern(s);
+        } else if (uniqueStrings) {
+            String result = unique.get(s);
+            if (null == result) {
+                unique.put(s, s);
+                result = s;
+            }
+            return result;
+        } else {
+            return s;
+        }
+    }
+
+    public String getDescription() {
+        return ILoader.XML_FILES;
+    }
+}
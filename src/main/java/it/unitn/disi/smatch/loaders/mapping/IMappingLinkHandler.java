@@ -0,0 +1,18 @@
+package it.unitn.disi.smatch.loaders.mapping;
+
+/**
+ * Receives links streamed from a mapping file, as they are read.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IMappingLinkHandler {
+
+    /**
+     * Handles a link.
+     *
+     * @param sourceId id of the source node
+     * @param targetId id of the target node
+     * @param relation relation
+     */
+    void handleLink(String sourceId, String targetId, char relation);
+}
@@ -0,0 +1,20 @@
+package it.unitn.disi.smatch.loaders.mapping;
+
+import it.unitn.disi.smatch.data.trees.INode;
+
+/**
+ * Receives links streamed from a mapping file with node ids resolved against the source and target contexts.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IMappingNodeLinkHandler {
+
+    /**
+     * Handles a link.
+     *
+     * @param source   source node
+     * @param target   target node
+     * @param relation relation
+     */
+    void handleLink(INode source, INode target, char relation);
+}
@@ -0,0 +1,179 @@
+package it.unitn.disi.smatch.loaders.mapping;
+
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Compact index of context nodes by node id. Uses open addressing over two arrays, node id hashes and nodes,
+ * without entry objects, and compares ids of the nodes themselves, without keeping separate keys.
+ * <p/>
+ * Indexes are immutable and are cached per context, see {@link #forContext(IContext)}. Cached index
+ * is reused by all mapping loads against the context, therefore, if the context nodes or their ids
+ * are changed, the index should be invalidated with {@link #invalidate(IContext)}. As a safety net, the cached
+ * index is rebuilt if the root or the amount of nodes of the context has changed, which catches added and
+ * removed nodes, but not changed ids or moved nodes.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class NodeIdIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeIdIndex.class);
+
+    // context -> index, weak to let contexts go
+    private static final Map<IContext, NodeIdIndex> cache = new WeakHashMap<>();
+
+    private final int[] hashes;
+    private final INode[] nodes;
+    private final int mask;
+    private final int size;
+    // node with null id, if any
+    private final INode nullIdNode;
+    // fingerprint of the indexed context, to detect changes made without invalidation
+    private final INode root;
+    private final int nodeCount;
+
+    /**
+     * Indexes the nodes of the context. As in a map, if several nodes have the same id, the last one is indexed.
+     *
+     * @param context context
+     */
+    public NodeIdIndex(IContext context) {
+        int nodeCount = 0;
+        for (Iterator<INode> i = context.nodeIterator(); i.hasNext(); i.next()) {
+            nodeCount++;
+        }
+        this.root = context.getRoot();
+        this.nodeCount = nodeCount;
+
+        // capacity is a power of two, about 1.5-3 times the node count
+        int capacity = Integer.highestOneBit(Math.max(2, nodeCount + (nodeCount >> 1)) - 1) << 1;
+        hashes = new int[capacity];
+        nodes = new INode[capacity];
+        mask = capacity - 1;
+
+        int count = 0;
+        INode nullNode = null;
+        for (Iterator<INode> i = context.nodeIterator(); i.hasNext(); ) {
+            INode node = i.next();
+            String id = node.nodeData().getId();
+            if (null == id) {
+                if (null == nullNode) {
+                    count++;
+                }
+                nullNode = node;
+            } else {
+                int hash = id.hashCode();
+                int index = indexFor(hash);
+                while (null != nodes[index]) {
+                    if (hash == hashes[index] && id.equals(nodes[index].nodeData().getId())) {
+                        break;
+                    }
+                    index = (index + 1) & mask;
+                }
+                if (null == nodes[index]) {
+                    count++;
+                }
+                hashes[index] = hash;
+                nodes[index] = node;
+            }
+        }
+        nullIdNode = nullNode;
+        size = count;
+    }
+
+    /**
+     * Returns the index of the context, creating and caching it if needed.
+     *
+     * @param context context
+     * @return index of the context nodes
+     */
+    public static NodeIdIndex forContext(IContext context) {
+        NodeIdIndex result;
+        synchronized (cache) {
+            result = cache.get(context);
+        }
+        if (null != result && !result.matches(context)) {
+            log.info("Context has changed since indexing, rebuilding node id index...");
+            result = null;
+        }
+        if (null == result) {
+            result = new NodeIdIndex(context);
+            if (log.isInfoEnabled()) {
+                log.info("Created node id index for " + result.size() + " nodes...");
+            }
+            synchronized (cache) {
+                NodeIdIndex other = cache.get(context);
+                if (null == other || other.nodeCount != result.nodeCount || other.root != result.root) {
+                    cache.put(context, result);
+                } else {
+                    result = other;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the cached index of the context. Should be called when the context nodes or their ids change.
+     *
+     * @param context context
+     */
+    public static void invalidate(IContext context) {
+        synchronized (cache) {
+            cache.remove(context);
+        }
+    }
+
+    /**
+     * Returns the node with the id.
+     *
+     * @param id node id
+     * @return node or null, if not found
+     */
+    public INode get(String id) {
+        if (null == id) {
+            return nullIdNode;
+        }
+        int hash = id.hashCode();
+        int index = indexFor(hash);
+        INode node;
+        while (null != (node = nodes[index])) {
+            if (hash == hashes[index] && id.equals(node.nodeData().getId())) {
+                return node;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the amount of indexed ids.
+     *
+     * @return the amount of indexed ids
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the context looks as it was when indexed.
+     *
+     * @param context context
+     * @return false if the root or the amount of nodes has changed
+     */
+    private boolean matches(IContext context) {
+        return root == context.getRoot() && nodeCount == context.nodesCount();
+    }
+
+    private int indexFor(int hash) {
+        // spreads hashes of sequential ids like n1, n2, ...
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,461 @@
+package it.unitn.disi.smatch.loaders.mapping;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.mappings.IContextMapping;
+import it.unitn.disi.smatch.data.mappings.IMappingElement;
+import it.unitn.disi.smatch.data.mappings.IMappingFactory;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.io.Parallelism;
+import it.unitn.disi.smatch.loaders.ILoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads mappings in SimpleXML format as rendered by SimpleXMLMappingRenderer, parsing parts of the file
+ * in parallel. The file is split into byte ranges, each range is scanned for link elements starting in it,
+ * and links of all ranges are added to the mapping in the file order. The file is expected to be
+ * in UTF-8 and to contain only the mapping element with links, like files written by the renderer.
+ * Compressed files cannot be split and are loaded by {@link SimpleXMLMappingLoader}.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class ParallelSimpleXMLMappingLoader extends BaseFileMappingLoader implements IAsyncMappingLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelSimpleXMLMappingLoader.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // smaller files are not split
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    // ranges per thread, to balance the load
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    /**
+     * Creates a loader which creates its own threads for each load.
+     *
+     * @param mappingFactory mapping factory
+     * @param parallelism    how many threads parse the file
+     */
+    public ParallelSimpleXMLMappingLoader(IMappingFactory mappingFactory, int parallelism) {
+        this(mappingFactory, null, parallelism);
+    }
+
+    /**
+     * Creates a loader which parses on the executor. The executor is not shut down.
+     *
+     * @param mappingFactory mapping factory
+     * @param executor       executor to parse the file
+     * @param parallelism    how many parts of the file to parse at the same time
+     */
+    public ParallelSimpleXMLMappingLoader(IMappingFactory mappingFactory, ExecutorService executor, int parallelism) {
+        super(mappingFactory);
+        this.executor = executor;
+        this.parallelism = Parallelism.check(parallelism);
+    }
+
+    public ParallelSimpleXMLMappingLoader(IMappingFactory mappingFactory, ExecutorService executor, int parallelism,
+                                          IContext source, IContext target, String location) {
+        super(mappingFactory, source, target, location);
+        this.executor = executor;
+        this.parallelism = Parallelism.check(parallelism);
+    }
+
+    @Override
+    public AsyncTask<IContextMapping<INode>, IMappingElement<INode>> asyncLoad(IContext source, IContext target, String location) {
+        return new ParallelSimpleXMLMappingLoader(mappingFactory, executor, parallelism, source, target, location);
+    }
+
+    @Override
+    public IContextMapping<INode> loadMapping(IContext source, IContext target, String location) throws MappingLoaderException {
+        try {
+            if (CompressedStreams.isCompressedFile(location)) {
+                log.debug("Compressed file, loading sequentially");
+                return new SimpleXMLMappingLoader(mappingFactory).loadMapping(source, target, location);
+            }
+            RandomAccessFile file = new RandomAccessFile(location, "r");
+            try {
+                return load(source, target, file.getChannel());
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new MappingLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected IContextMapping<INode> process(IContext source, IContext target, BufferedReader reader) throws IOException, MappingLoaderException {
+        // a reader cannot be split
+        return new SimpleXMLMappingLoader(mappingFactory).process(source, target, reader);
+    }
+
+    private IContextMapping<INode> load(IContext source, IContext target, FileChannel channel) throws IOException, MappingLoaderException {
+        final NodeIdIndex sNodes = NodeIdIndex.forContext(source);
+        final NodeIdIndex tNodes = NodeIdIndex.forContext(target);
+        setProgress(0);
+
+        long size = channel.size();
+        int chunkCount = (int) Math.max(1, Math.min(parallelism * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE));
+        long chunkSize = size / chunkCount;
+
+        ExecutorService pool = null == executor ? Executors.newFixedThreadPool(parallelism) : executor;
+        List<Future<Chunk>> futures = new ArrayList<>(chunkCount);
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                final long start = i * chunkSize;
+                final long end = i == chunkCount - 1 ? size : start + chunkSize;
+                final ChunkParser parser = new ChunkParser(channel, start, end, sNodes, tNodes);
+                futures.add(pool.submit(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() throws Exception {
+                        return parser.parse();
+                    }
+                }));
+            }
+
+            IContextMapping<INode> mapping = mappingFactory.getContextMappingInstance(source, target);
+            for (Future<Chunk> future : futures) {
+                Chunk chunk = future.get();
+                if (null == chunk) {
+                    return null;
+                }
+                if (null != chunk.similarity) {
+                    mapping.setSimilarity(Double.parseDouble(chunk.similarity));
+                }
+                for (int i = 0; i < chunk.size; i++) {
+                    mapping.setRelation(chunk.nodes[2 * i], chunk.nodes[2 * i + 1], chunk.relations[i]);
+                }
+                setProgress(getProgress() + chunk.size);
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+            }
+            log.info("Parsed links: " + getProgress());
+            return mapping;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new MappingLoaderException(cause.getClass().getSimpleName() + ": " + cause.getMessage(), cause);
+        } finally {
+            for (Future<Chunk> future : futures) {
+                future.cancel(true);
+            }
+            if (null == executor) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    public String getDescription() {
+        return ILoader.XML_FILES;
+    }
+
+    /**
+     * Links of a range, in the file order.
+     */
+    private static class Chunk {
+        private INode[] nodes = new INode[256];
+        private char[] relations = new char[128];
+        private int size;
+        private String similarity;
+
+        private void add(INode source, INode target, char relation) {
+            if (size == relations.length) {
+                nodes = Arrays.copyOf(nodes, 4 * size);
+                relations = Arrays.copyOf(relations, 2 * size);
+            }
+            nodes[2 * size] = source;
+            nodes[2 * size + 1] = target;
+            relations[size] = relation;
+            size++;
+        }
+    }
+
+    /**
+     * Scans a range of the file for link elements starting in it. Reads the file with positional reads,
+     * so that parsers of different ranges share the channel.
+     */
+    private static class ChunkParser {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+        // how many elements are parsed between interruption checks
+        private static final int ELEMENTS_PER_CHECK = 1024;
+
+        private final FileChannel channel;
+        private final long end;
+        private final NodeIdIndex sNodes;
+        private final NodeIdIndex tNodes;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] bytes = buffer.array();
+        // file position of the buffer start
+        private long position;
+        private int index;
+        private int length;
+
+        // tag name and attribute being parsed
+        private final StringBuilder name = new StringBuilder();
+        private byte[] value = new byte[256];
+        private int valueLength;
+
+        private ChunkParser(FileChannel channel, long start, long end, NodeIdIndex sNodes, NodeIdIndex tNodes) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            this.sNodes = sNodes;
+            this.tNodes = tNodes;
+        }
+
+        /**
+         * Parses the range.
+         *
+         * @return links of the range or null, if interrupted
+         * @throws IOException IOException
+         */
+        private Chunk parse() throws IOException {
+            Chunk result = new Chunk();
+            int elements = 0;
+            int b;
+            while (-1 != (b = read())) {
+                if ('<' != b) {
+                    continue;
+                }
+                if (end <= position + index - 1) {
+                    break;
+                }
+                if (0 == ++elements % ELEMENTS_PER_CHECK && Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                b = readName(read());
+                String tag = name.toString();
+                if ("link".equals(tag)) {
+                    parseLink(b, result);
+                } else if ("mapping".equals(tag)) {
+                    parseMapping(b, result);
+                } else if (tag.startsWith("!--")) {
+                    if ('>' != b || tag.length() < 5 || !tag.endsWith("--")) {
+                        skipComment();
+                    }
+                } else {
+                    while ('>' != b && -1 != b) {
+                        b = read();
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void parseLink(int b, Chunk result) throws IOException {
+            String sourceId = null;
+            String targetId = null;
+            String relation = null;
+            while (-1 != (b = skipWhitespace(b)) && '/' != b && '>' != b) {
+                b = readName(b);
+                String attribute = name.toString();
+                b = readValue(b);
+                switch (attribute) {
+                    case "source-id":
+                        sourceId = value();
+                        break;
+                    case "target-id":
+                        targetId = value();
+                        break;
+                    case "relation":
+                        relation = value();
+                        break;
+                }
+                b = read();
+            }
+            if (null == sourceId || null == targetId || null == relation || relation.isEmpty()) {
+                throw new IOException("Malformed link at position " + (position + index));
+            }
+
+            INode source = sNodes.get(sourceId);
+            INode target = tNodes.get(targetId);
+            if ((null != source) && (null != target)) {
+                result.add(source, target, relation.charAt(0));
+            } else {
+                if (log.isWarnEnabled()) {
+                    if (null == source) {
+                        log.warn("Could not find source node for id: " + sourceId);
+                    }
+                    if (null == target) {
+                        log.warn("Could not find target node for id: " + targetId);
+                    }
+                }
+            }
+        }
+
+        private void parseMapping(int b, Chunk result) throws IOException {
+            while (-1 != (b = skipWhitespace(b)) && '/' != b && '>' != b) {
+                b = readName(b);
+                String attribute = name.toString();
+                b = readValue(b);
+                if ("similarity".equals(attribute)) {
+                    result.similarity = value();
+                }
+                b = read();
+            }
+        }
+
+        private void skipComment() throws IOException {
+            int dashes = 0;
+            int b;
+            while (-1 != (b = read())) {
+                if ('>' == b && 2 <= dashes) {
+                    return;
+                }
+                dashes = '-' == b ? dashes + 1 : 0;
+            }
+        }
+
+        /**
+         * Reads a tag or attribute name starting with b.
+         *
+         * @param b the first character
+         * @return the character after the name
+         * @throws IOException IOException
+         */
+        private int readName(int b) throws IOException {
+            name.setLength(0);
+            while (-1 != b && '>' != b && '/' != b && '=' != b && !isWhitespace(b)) {
+                name.append((char) b);
+                b = read();
+            }
+            return b;
+        }
+
+        /**
+         * Reads a quoted attribute value after the attribute name.
+         *
+         * @param b the character after the name
+         * @return the closing quote
+         * @throws IOException IOException
+         */
+        private int readValue(int b) throws IOException {
+            b = skipWhitespace(b);
+            if ('=' != b) {
+                throw new IOException("Expected = at position " + (position + index));
+            }
+            b = skipWhitespace(read());
+            if ('"' != b && '\'' != b) {
+                throw new IOException("Expected quote at position " + (position + index));
+            }
+            int quote = b;
+            valueLength = 0;
+            while (quote != (b = read())) {
+                if (-1 == b) {
+                    throw new IOException("Unexpected end of file in attribute value");
+                }
+                if (valueLength == value.length) {
+                    value = Arrays.copyOf(value, 2 * value.length);
+                }
+                value[valueLength++] = (byte) b;
+            }
+            return b;
+        }
+
+        private String value() throws IOException {
+            String result = new String(value, 0, valueLength, UTF8);
+            return -1 == result.indexOf('&') ? result : unescape(result);
+        }
+
+        private int skipWhitespace(int b) throws IOException {
+            while (isWhitespace(b)) {
+                b = read();
+            }
+            return b;
+        }
+
+        private int read() throws IOException {
+            if (index == length) {
+                position += length;
+                index = 0;
+                buffer.clear();
+                length = Math.max(0, channel.read(buffer, position));
+                if (0 == length) {
+                    return -1;
+                }
+            }
+            return bytes[index++] & 0xff;
+        }
+
+        private static boolean isWhitespace(int b) {
+            return ' ' == b || '\n' == b || '\r' == b || '\t' == b;
+        }
+    }
+
+    /**
+     * Replaces predefined entities and character references.
+     *
+     * @param s attribute value
+     * @return unescaped value
+     * @throws IOException on unknown entity
+     */
+    static String unescape(String s) throws IOException {
+        StringBuilder result = new StringBuilder(s.length());
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if ('&' != c) {
+                result.append(c);
+                i++;
+                continue;
+            }
+            int semicolon = s.indexOf(';', i);
+            if (-1 == semicolon) {
+                throw new IOException("Unterminated entity in: " + s);
+            }
+            String entity = s.substring(i + 1, semicolon);
+            switch (entity) {
+                case "amp":
+                    result.append('&');
+                    break;
+                case "lt":
+                    result.append('<');
+                    break;
+                case "gt":
+                    result.append('>');
+                    break;
+                case "quot":
+                    result.append('"');
+                    break;
+                case "apos":
+                    result.append('\'');
+                    break;
+                default:
+                    if (entity.startsWith("#x")) {
+                        result.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+                    } else if (entity.startsWith("#")) {
+                        result.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                    } else {
+                        throw new IOException("Unknown entity: " + entity);
+                    }
+            }
+            i = semicolon + 1;
+        }
+        return result.toString();
+    }
+}
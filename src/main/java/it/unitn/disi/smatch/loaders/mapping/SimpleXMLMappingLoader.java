@@ -6,22 +6,33 @@ import it.unitn.disi.smatch.data.mappings.IMappingElement;
 import it.unitn.disi.smatch.data.mappings.IMappingFactory;
 import it.unitn.disi.smatch.data.trees.IContext;
 import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.CompressedStreams;
 import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.loaders.IStringInterner;
 import it.unitn.disi.smatch.loaders.ParseInterruptedException;
+import it.unitn.disi.smatch.loaders.XMLReaderPool;
+import it.unitn.disi.smatch.metrics.IMetricsListener;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.*;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.util.HashMap;
-import java.util.Iterator;
 
 /**
  * Loads mappings in SimpleXML format as rendered by SimpleXMLMappingRenderer.
+ * <p/>
+ * Node ids are resolved through {@link NodeIdIndex}, which is built once per context and reused
+ * by subsequent loads against the same contexts. Callers which change a context, its nodes or their ids,
+ * should call {@link NodeIdIndex#invalidate(IContext)} before loading mappings against it.
+ * <p/>
+ * Compressed files are decompressed transparently, see {@link CompressedStreams}. Interruption is checked
+ * and progress is reported every 1024 elements, instead of in every parser callback. Phases of loading
+ * (open, index, parse and load) are reported to the metrics listener, if one is set.
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  */
@@ -29,52 +40,193 @@ public class SimpleXMLMappingLoader extends BaseFileMappingLoader implements IAs
 
     private static final Logger log = LoggerFactory.getLogger(SimpleXMLMappingLoader.class);
 
-    private static final String DEFAULT_PARSER_NAME = "org.apache.xerces.parsers.SAXParser";
+    // how many elements are parsed between interruption checks and progress updates
+    private static final int ELEMENTS_PER_CHECK = 1024;
 
-    private final XMLReader parser;
+    // interner for node ids, may be null
+    private final IStringInterner interner;
     private IContextMapping<INode> mapping;
-    // hashes node id -> node
-    private HashMap<String, INode> sNodes;
-    private HashMap<String, INode> tNodes;
+    // node id -> node
+    private NodeIdIndex sNodes;
+    private NodeIdIndex tNodes;
+    // handlers for streaming links instead of creating a mapping
+    private IMappingLinkHandler linkHandler;
+    private IMappingNodeLinkHandler nodeLinkHandler;
+
+    private IMetricsListener metricsListener;
+
+    // elements parsed since the last check
+    private int elementCount;
+    // links loaded, reported as progress in batches
+    private long linkCount;
 
     public SimpleXMLMappingLoader(IMappingFactory mappingFactory) {
+        this(mappingFactory, (IStringInterner) null);
+    }
+
+    /**
+     * @param mappingFactory mapping factory
+     * @param interner       interner for node ids of the streamed links, may be shared with other loaders
+     */
+    public SimpleXMLMappingLoader(IMappingFactory mappingFactory, IStringInterner interner) {
         super(mappingFactory);
-        try {
-            parser = XMLReaderFactory.createXMLReader(DEFAULT_PARSER_NAME);
-            parser.setProperty("http://apache.org/xml/properties/input-buffer-size", 8196);
-        } catch (SAXException e) {
-            throw new IllegalStateException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
-        }
+        this.interner = interner;
     }
 
     public SimpleXMLMappingLoader(IMappingFactory mappingFactory, IContext source, IContext target, String fileName) {
+        this(mappingFactory, null, source, target, fileName);
+    }
+
+    public SimpleXMLMappingLoader(IMappingFactory mappingFactory, IStringInterner interner, IContext source, IContext target, String fileName) {
         super(mappingFactory, source, target, fileName);
-        try {
-            parser = XMLReaderFactory.createXMLReader(DEFAULT_PARSER_NAME);
-            parser.setProperty("http://apache.org/xml/properties/input-buffer-size", 8196);
-        } catch (SAXException e) {
-            throw new IllegalStateException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
-        }
+        this.interner = interner;
     }
 
     @Override
     public AsyncTask<IContextMapping<INode>, IMappingElement<INode>> asyncLoad(IContext source, IContext target, String fileName) {
-        return new SimpleXMLMappingLoader(mappingFactory, source, target, fileName);
+        SimpleXMLMappingLoader result = new SimpleXMLMappingLoader(mappingFactory, interner, source, target, fileName);
+        result.setMetricsListener(metricsListener);
+        return result;
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener to report loading phases to.
+     *
+     * @param metricsListener metrics listener, null to stop reporting
+     */
+    public void setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    private PhaseTimer startPhase(String phase) {
+        return PhaseTimer.start(metricsListener, getClass().getSimpleName(), phase);
+    }
+
+    @Override
+    public IContextMapping<INode> loadMapping(IContext source, IContext target, String location) throws MappingLoaderException {
+        try {
+            PhaseTimer load = startPhase("load");
+            PhaseTimer open = startPhase("open");
+            BufferedReader reader = CompressedStreams.openReader(location);
+            open.stop();
+            try {
+                IContextMapping<INode> result = process(source, target, reader);
+                if (null != metricsListener && null != result) {
+                    load.stop(result.size(), new File(location).length());
+                }
+                return result;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new MappingLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
     }
 
     @Override
     protected IContextMapping<INode> process(IContext source, IContext target, BufferedReader reader) throws IOException, MappingLoaderException {
         mapping = mappingFactory.getContextMappingInstance(source, target);
+        PhaseTimer index = startPhase("index");
+        sNodes = NodeIdIndex.forContext(source);
+        tNodes = NodeIdIndex.forContext(target);
+        index.stop(sNodes.size() + tNodes.size(), -1);
+        try {
+            if (!parse(reader)) {
+                mapping = null;
+            }
+        } finally {
+            sNodes = null;
+            tNodes = null;
+        }
+        return mapping;
+    }
+
+    /**
+     * Streams links from the mapping file to the handler without creating a mapping
+     * and without resolving node ids.
+     *
+     * @param location mapping file
+     * @param handler  link handler
+     * @return false if interrupted, then only a part of the links is streamed
+     * @throws MappingLoaderException MappingLoaderException
+     */
+    public boolean stream(String location, IMappingLinkHandler handler) throws MappingLoaderException {
+        linkHandler = handler;
+        try {
+            return stream(location);
+        } finally {
+            linkHandler = null;
+        }
+    }
+
+    /**
+     * Streams links from the mapping file to the handler without creating a mapping.
+     * Node ids are resolved against the source and target contexts.
+     *
+     * @param location mapping file
+     * @param source   source context
+     * @param target   target context
+     * @param handler  link handler
+     * @return false if interrupted, then only a part of the links is streamed
+     * @throws MappingLoaderException MappingLoaderException
+     */
+    public boolean stream(String location, IContext source, IContext target, IMappingNodeLinkHandler handler) throws MappingLoaderException {
+        nodeLinkHandler = handler;
+        sNodes = NodeIdIndex.forContext(source);
+        tNodes = NodeIdIndex.forContext(target);
+        try {
+            return stream(location);
+        } finally {
+            nodeLinkHandler = null;
+            sNodes = null;
+            tNodes = null;
+        }
+    }
+
+    private boolean stream(String location) throws MappingLoaderException {
+        mapping = null;
+        try {
+            BufferedReader reader = CompressedStreams.openReader(location);
+            try {
+                return parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new MappingLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the mapping file.
+     *
+     * @param reader mapping file reader
+     * @return false, if parsing was interrupted
+     * @throws IOException            IOException
+     * @throws MappingLoaderException MappingLoaderException
+     */
+    private boolean parse(BufferedReader reader) throws IOException, MappingLoaderException {
         try {
+            PhaseTimer parse = startPhase("parse");
             InputSource is = new InputSource(reader);
-            parser.setContentHandler(this);
-            parser.parse(is);
+            XMLReader parser = XMLReaderPool.acquire();
+            try {
+                parser.setContentHandler(this);
+                parser.parse(is);
+            } finally {
+                XMLReaderPool.release(parser);
+            }
+            parse.stop(getProgress(), -1);
         } catch (ParseInterruptedException e) {
-            mapping = null;
+            return false;
         } catch (SAXException | FileNotFoundException | UnsupportedEncodingException e) {
             throw new MappingLoaderException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
         }
-        return mapping;
+        return true;
     }
 
     public String getDescription() {
@@ -90,9 +242,9 @@ public class SimpleXMLMappingLoader extends BaseFileMappingLoader implements IAs
         if (Thread.currentThread().isInterrupted()) {
             throw new ParseInterruptedException();
         }
+        elementCount = 0;
+        linkCount = 0;
         setProgress(0);
-        sNodes = createHash(source);
-        tNodes = createHash(target);
     }
 
     @Override
@@ -100,39 +252,54 @@ public class SimpleXMLMappingLoader extends BaseFileMappingLoader implements IAs
         if (Thread.currentThread().isInterrupted()) {
             throw new ParseInterruptedException();
         }
+        setProgress(linkCount);
         log.info("Parsed nodes: " + getProgress());
     }
 
     @Override
     public void startPrefixMapping(String prefix, String uri) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void endPrefixMapping(String prefix) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
+        if (ELEMENTS_PER_CHECK == ++elementCount) {
+            elementCount = 0;
+            setProgress(linkCount);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ParseInterruptedException();
+            }
         }
         if ("mapping".equals(localName)) {
-            mapping.setSimilarity(Double.parseDouble(atts.getValue("similarity")));
+            if (null != mapping) {
+                mapping.setSimilarity(Double.parseDouble(atts.getValue("similarity")));
+            }
         } else if ("link".equals(localName)) {
-            final String sourceId = atts.getValue("source-id");
+            String sourceId = atts.getValue("source-id");
+            String targetId = atts.getValue("target-id");
+            char rel = atts.getValue("relation").charAt(0);
+            if (null != linkHandler) {
+                if (null != interner) {
+                    sourceId = interner.intern(sourceId);
+                    targetId = interner.intern(targetId);
+                }
+                linkHandler.handleLink(sourceId, targetId, rel);
+                linkCount++;
+                return;
+            }
+
             INode source = sNodes.get(sourceId);
-            final String targetId = atts.getValue("target-id");
             INode target = tNodes.get(targetId);
-            char rel = atts.getValue("relation").charAt(0);
             if ((null != source) && (null != target)) {
-                mapping.setRelation(source, target, rel);
-                progress();
+                if (null != nodeLinkHandler) {
+                    nodeLinkHandler.handleLink(source, target, rel);
+                } else {
+                    mapping.setRelation(source, target, rel);
+                }
+                linkCount++;
             } else {
                 if (log.isWarnEnabled()) {
                     if (null == source) {
@@ -149,59 +316,21 @@ public class SimpleXMLMappingLoader extends BaseFileMappingLoader implements IAs
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
     }
 
     @Override
     public void skippedEntity(String name) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new ParseInterruptedException();
-        }
-    }
-
-    /**
-     * Creates hash map for nodes which contains path from root to node for each node.
-     *
-     * @param context a context
-     * @return a hash table which contains path from root to node for each node
-     */
-    private HashMap<String, INode> createHash(IContext context) {
-        HashMap<String, INode> result = new HashMap<>();
-
-        int nodeCount = 0;
-        for (Iterator<INode> i = context.nodeIterator(); i.hasNext(); ) {
-            INode node = i.next();
-            result.put(node.nodeData().getId(), node);
-            nodeCount++;
-        }
-
-        if (log.isInfoEnabled()) {
-            log.info("Created hash for " + nodeCount + " nodes...");
-        }
-
-        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package it.unitn.disi.smatch.metrics;
+
+/**
+ * Receives metrics of loading and rendering phases, like opening a file, parsing it, building indexes,
+ * removing duplicates or rendering. Listeners are called by the loading or rendering thread, possibly
+ * from several threads at the same time, and should return quickly.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IMetricsListener {
+
+    /**
+     * Called when a phase is completed.
+     *
+     * @param metrics phase metrics
+     */
+    void phaseCompleted(PhaseMetrics metrics);
+}
@@ -0,0 +1,197 @@
+package it.unitn.disi.smatch.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics listener which aggregates phase metrics and exposes them as an MXBean, for JMX consoles
+ * and monitoring systems. One listener may be shared by many loaders and renderers.
+ * <p/>
+ * Usage:
+ * <pre>
+ * JMXMetricsListener metrics = new JMXMetricsListener();
+ * metrics.register("loaders");
+ * loader.setMetricsListener(metrics);
+ * </pre>
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class JMXMetricsListener implements IMetricsListener, MetricsMXBean {
+
+    public static final String DOMAIN = "it.unitn.disi.smatch";
+
+    private final ConcurrentMap<String, Totals> totals = new ConcurrentHashMap<>();
+    private ObjectName objectName;
+
+    @Override
+    public void phaseCompleted(PhaseMetrics metrics) {
+        String key = metrics.getComponent() + "." + metrics.getPhase();
+        Totals keyTotals = totals.get(key);
+        if (null == keyTotals) {
+            keyTotals = new Totals();
+            Totals other = totals.putIfAbsent(key, keyTotals);
+            if (null != other) {
+                keyTotals = other;
+            }
+        }
+        keyTotals.add(metrics);
+    }
+
+    /**
+     * Registers the listener in the platform MBean server under DOMAIN:type=Metrics,name=name.
+     *
+     * @param name listener name
+     * @throws JMException JMException
+     */
+    public synchronized void register(String name) throws JMException {
+        ObjectName newName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+        objectName = newName;
+    }
+
+    /**
+     * Unregisters the listener from the platform MBean server, if registered.
+     *
+     * @throws JMException JMException
+     */
+    public synchronized void unregister() throws JMException {
+        if (null != objectName) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public Map<String, Long> getInvocations() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), e.getValue().invocations);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getTotalMillis() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), e.getValue().nanos / 1000000);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), e.getValue().count);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getBytes() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), e.getValue().bytes);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getAllocatedBytes() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), e.getValue().allocatedBytes);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getCountsPerSecond() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), PhaseMetrics.perSecond(e.getValue().count, e.getValue().countNanos));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getBytesPerSecond() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), PhaseMetrics.perSecond(e.getValue().bytes, e.getValue().bytesNanos));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, String> getLast() {
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, Totals> e : totals.entrySet()) {
+            synchronized (e.getValue()) {
+                result.put(e.getKey(), String.valueOf(e.getValue().last));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        totals.clear();
+    }
+
+    /**
+     * Totals of one component phase. Unknown values are not added, throughput is computed over the time
+     * of the phases with known values.
+     */
+    private static class Totals {
+        private long invocations;
+        private long nanos;
+        private long count;
+        private long countNanos;
+        private long bytes;
+        private long bytesNanos;
+        private long allocatedBytes;
+        private PhaseMetrics last;
+
+        private synchronized void add(PhaseMetrics metrics) {
+            invocations++;
+            nanos += metrics.getNanos();
+            if (0 <= metrics.getCount()) {
+                count += metrics.getCount();
+                countNanos += metrics.getNanos();
+            }
+            if (0 <= metrics.getBytes()) {
+                bytes += metrics.getBytes();
+                bytesNanos += metrics.getNanos();
+            }
+            if (0 <= metrics.getAllocatedBytes()) {
+                allocatedBytes += metrics.getAllocatedBytes();
+            }
+            last = metrics;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package it.unitn.disi.smatch.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link JMXMetricsListener}. Values are totals since the start or the last reset,
+ * keyed by component.phase.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getInvocations();
+
+    Map<String, Long> getTotalMillis();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getBytes();
+
+    Map<String, Long> getAllocatedBytes();
+
+    Map<String, Double> getCountsPerSecond();
+
+    Map<String, Double> getBytesPerSecond();
+
+    /**
+     * Returns the metrics of the last completed phase for each key.
+     *
+     * @return the last metrics
+     */
+    Map<String, String> getLast();
+
+    void reset();
+}
@@ -0,0 +1,96 @@
+package it.unitn.disi.smatch.metrics;
+
+/**
+ * Metrics of one completed phase: its duration, how many items (nodes, links) it processed, how many bytes
+ * it read or wrote and how many bytes the phase thread allocated. Unknown values are negative.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class PhaseMetrics {
+
+    private final String component;
+    private final String phase;
+    private final long nanos;
+    private final long count;
+    private final long bytes;
+    private final long allocatedBytes;
+
+    public PhaseMetrics(String component, String phase, long nanos, long count, long bytes, long allocatedBytes) {
+        this.component = component;
+        this.phase = phase;
+        this.nanos = nanos;
+        this.count = count;
+        this.bytes = bytes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Returns the name of the loader or renderer.
+     *
+     * @return component name
+     */
+    public String getComponent() {
+        return component;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns processed items per second, or a negative value, if unknown.
+     *
+     * @return processed items per second
+     */
+    public double getCountPerSecond() {
+        return perSecond(count, nanos);
+    }
+
+    /**
+     * Returns read or written bytes per second, or a negative value, if unknown.
+     *
+     * @return bytes per second
+     */
+    public double getBytesPerSecond() {
+        return perSecond(bytes, nanos);
+    }
+
+    static double perSecond(long value, long nanos) {
+        if (value < 0 || nanos <= 0) {
+            return -1;
+        }
+        return value * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(component).append('.').append(phase).append(": ").append(nanos / 1000000).append("ms");
+        if (0 <= count) {
+            result.append(", count: ").append(count);
+        }
+        if (0 <= bytes) {
+            result.append(", bytes: ").append(bytes);
+        }
+        if (0 <= allocatedBytes) {
+            result.append(", allocated: ").append(allocatedBytes);
+        }
+        return result.toString();
+    }
+}
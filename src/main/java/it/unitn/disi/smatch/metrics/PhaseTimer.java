@@ -0,0 +1,94 @@
+package it.unitn.disi.smatch.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures a phase and reports it to a listener. Without a listener, a shared timer which does nothing
+ * is returned, so that measuring costs nothing when metrics are not collected.
+ * <p/>
+ * Allocation is measured for the current thread, where the JVM supports it, therefore it does not include
+ * allocation by worker threads of parallel phases.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class PhaseTimer {
+
+    private static final PhaseTimer DISABLED = new PhaseTimer(null, null, null);
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean allocationSupported = isAllocationSupported();
+
+    private final IMetricsListener listener;
+    private final String component;
+    private final String phase;
+    private final long start;
+    private final long startAllocated;
+
+    private PhaseTimer(IMetricsListener listener, String component, String phase) {
+        this.listener = listener;
+        this.component = component;
+        this.phase = phase;
+        if (null != listener) {
+            this.startAllocated = allocatedBytes();
+            this.start = System.nanoTime();
+        } else {
+            this.startAllocated = -1;
+            this.start = 0;
+        }
+    }
+
+    /**
+     * Starts measuring the phase.
+     *
+     * @param listener  listener to report to, may be null
+     * @param component loader or renderer name
+     * @param phase     phase name
+     * @return timer
+     */
+    public static PhaseTimer start(IMetricsListener listener, String component, String phase) {
+        if (null == listener) {
+            return DISABLED;
+        }
+        return new PhaseTimer(listener, component, phase);
+    }
+
+    /**
+     * Stops measuring the phase and reports it.
+     *
+     * @param count how many items are processed, negative if unknown
+     * @param bytes how many bytes are read or written, negative if unknown
+     */
+    public void stop(long count, long bytes) {
+        if (null != listener) {
+            long nanos = System.nanoTime() - start;
+            long allocated = 0 <= startAllocated ? allocatedBytes() - startAllocated : -1;
+            listener.phaseCompleted(new PhaseMetrics(component, phase, nanos, count, bytes, allocated));
+        }
+    }
+
+    /**
+     * Stops measuring the phase without count and bytes and reports it.
+     */
+    public void stop() {
+        stop(-1, -1);
+    }
+
+    private static long allocatedBytes() {
+        if (allocationSupported) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            return threads instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        } catch (LinkageError e) {
+            // not a HotSpot based JVM
+            return false;
+        }
+    }
+}
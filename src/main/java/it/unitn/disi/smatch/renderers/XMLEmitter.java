@@ -0,0 +1,248 @@
+package it.unitn.disi.smatch.renderers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Lightweight streaming XML writer for renderers. Writes escaped markup directly to the output without
+ * building attribute lists or copying strings. The output matches the one of the JDK identity transformer
+ * configured with UTF-8 encoding and, optionally, indentation of 2 spaces.
+ * <p/>
+ * Attributes are written with {@link #attribute(String, String)} right after {@link #startElement(String)}.
+ * Not thread safe.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class XMLEmitter {
+
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private static final int INDENT_AMOUNT = 2;
+
+    private final Writer out;
+    private final boolean indent;
+
+    // current element depth
+    private int depth;
+    // whether the start tag of the current element is not closed with > yet
+    private boolean startTagOpen;
+    // whether the last content written was text
+    private boolean afterText;
+
+    private char[] spaces = new char[0];
+
+    /**
+     * Creates an emitter with indentation.
+     *
+     * @param out output
+     */
+    public XMLEmitter(Writer out) {
+        this(out, true);
+    }
+
+    /**
+     * @param out    output
+     * @param indent whether to put elements on separate indented lines
+     */
+    public XMLEmitter(Writer out, boolean indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    public Writer getWriter() {
+        return out;
+    }
+
+    public boolean isIndent() {
+        return indent;
+    }
+
+    /**
+     * Returns current element depth.
+     *
+     * @return current element depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets current element depth, for emitters which write a fragment of a document nested at a known depth.
+     *
+     * @param depth element depth
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void startDocument() throws IOException {
+        out.write(DECLARATION);
+    }
+
+    public void endDocument() throws IOException {
+        closeStartTag();
+        if (indent) {
+            out.write(LINE_SEPARATOR);
+        }
+        out.flush();
+    }
+
+    public void startElement(String name) throws IOException {
+        closeStartTag();
+        if (0 < depth && !afterText) {
+            newLine();
+        }
+        out.write('<');
+        out.write(name);
+        startTagOpen = true;
+        afterText = false;
+        depth++;
+    }
+
+    /**
+     * Writes an attribute of the element which has just been started. Null values are skipped.
+     *
+     * @param name  attribute name
+     * @param value attribute value
+     * @throws IOException IOException
+     */
+    public void attribute(String name, String value) throws IOException {
+        if (null != value) {
+            out.write(' ');
+            out.write(name);
+            out.write("=\"");
+            escape(value, true);
+            out.write('"');
+        }
+    }
+
+    public void endElement(String name) throws IOException {
+        depth--;
+        if (startTagOpen) {
+            out.write("/>");
+            startTagOpen = false;
+        } else {
+            if (!afterText) {
+                newLine();
+            }
+            out.write("</");
+            out.write(name);
+            out.write('>');
+        }
+        afterText = false;
+    }
+
+    public void characters(String text) throws IOException {
+        if (null != text && 0 < text.length()) {
+            closeStartTag();
+            escape(text, false);
+            afterText = true;
+        }
+    }
+
+    public void comment(String comment) throws IOException {
+        closeStartTag();
+        if (0 < depth && !afterText) {
+            newLine();
+        }
+        out.write("<!--");
+        out.write(comment);
+        out.write("-->");
+        afterText = false;
+    }
+
+    /**
+     * Writes an element with text content. Does nothing if the text is null or empty.
+     *
+     * @param name element name
+     * @param text element text
+     * @throws IOException IOException
+     */
+    public void element(String name, String text) throws IOException {
+        if (null != text && 0 < text.length()) {
+            startElement(name);
+            characters(text);
+            endElement(name);
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the start tag of the current element. Used before handing the output over to another emitter,
+     * which continues the document at the same depth, see {@link #setDepth(int)}.
+     *
+     * @throws IOException IOException
+     */
+    public void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            out.write('>');
+            startTagOpen = false;
+        }
+    }
+
+    private void newLine() throws IOException {
+        if (indent) {
+            out.write(LINE_SEPARATOR);
+            int count = depth * INDENT_AMOUNT;
+            if (spaces.length < count) {
+                spaces = new char[Math.max(count, 2 * spaces.length)];
+                Arrays.fill(spaces, ' ');
+            }
+            out.write(spaces, 0, count);
+        }
+    }
+
+    /**
+     * Writes the string escaping markup characters, control characters and supplementary characters
+     * as character references. Writes unchanged runs of the string in one call.
+     *
+     * @param s         string to write
+     * @param attribute whether the string is an attribute value
+     * @throws IOException IOException
+     */
+    private void escape(String s, boolean attribute) throws IOException {
+        final int length = s.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            String replacement;
+            if ('&' == c) {
+                replacement = "&amp;";
+            } else if ('<' == c) {
+                replacement = "&lt;";
+            } else if ('>' == c) {
+                replacement = "&gt;";
+            } else if ('"' == c && attribute) {
+                replacement = "&quot;";
+            } else if ('\n' == c) {
+                replacement = attribute ? "&#10;" : LINE_SEPARATOR;
+            } else if ('\t' == c) {
+                replacement = attribute ? "&#9;" : null;
+            } else if (c < 0x20 || (!attribute && 0x7F <= c && c <= 0x9F)) {
+                replacement = "&#" + (int) c + ";";
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    replacement = "&#" + Character.toCodePoint(c, s.charAt(i + 1)) + ";";
+                    out.write(s, start, i - start);
+                    out.write(replacement);
+                    i++;
+                    start = i + 1;
+                    continue;
+                }
+                throw new IOException("Invalid UTF-16 surrogate detected: " + Integer.toHexString(c));
+            } else {
+                replacement = null;
+            }
+            if (null != replacement) {
+                out.write(s, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(s, start, length - start);
+    }
+}
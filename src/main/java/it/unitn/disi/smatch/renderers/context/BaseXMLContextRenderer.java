@@ -3,133 +3,464 @@ package it.unitn.disi.smatch.renderers.context;
 import it.unitn.disi.smatch.data.trees.IBaseContext;
 import it.unitn.disi.smatch.data.trees.IBaseNode;
 import it.unitn.disi.smatch.data.trees.IBaseNodeData;
-import it.unitn.disi.smatch.data.trees.Node;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.io.Parallelism;
 import it.unitn.disi.smatch.loaders.ILoader;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.AttributesImpl;
-
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.sax.SAXTransformerFactory;
-import javax.xml.transform.sax.TransformerHandler;
-import javax.xml.transform.stream.StreamResult;
+import it.unitn.disi.smatch.metrics.IMetricsListener;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
+import it.unitn.disi.smatch.renderers.XMLEmitter;
+
 import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Base renderer for XML.
+ * Base renderer for XML. Files with names ending with .gz are compressed, see {@link CompressedStreams}.
+ * <p/>
+ * Nodes are rendered by {@link #startNode(XMLEmitter, IBaseNode)} before their children and by
+ * {@link #endNode(XMLEmitter, IBaseNode)} after them. Optionally, large contexts are rendered in parallel:
+ * the tree is cut into subtrees, which are rendered into separate buffers by worker threads, and
+ * the buffers are written in document order. The output is the same as the one rendered sequentially.
+ * <p/>
+ * Rendering is reported to the metrics listener, if one is set.
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  */
 public abstract class BaseXMLContextRenderer<E extends IBaseContext<T>, T extends IBaseNode> extends BaseFileContextRenderer<E, T> implements IBaseContextRenderer<E, T> {
 
+    // contexts with fewer nodes are rendered in the rendering thread
+    private static final int PARALLEL_THRESHOLD = 4096;
+    // subtrees per thread, to balance the load
+    private static final int SUBTREES_PER_THREAD = 8;
+    // smallest subtree rendered as a separate task
+    private static final int MIN_SUBTREE_SIZE = 256;
+
+    // how many threads render subtrees, 1 for rendering in the rendering thread
+    protected final int parallelism;
+
+    protected IMetricsListener metricsListener;
+
     protected BaseXMLContextRenderer() {
         super();
+        this.parallelism = 1;
     }
 
     protected BaseXMLContextRenderer(boolean sort) {
         super(sort);
+        this.parallelism = 1;
+    }
+
+    /**
+     * @param sort        whether to sort children by name
+     * @param parallelism how many threads render subtrees
+     */
+    protected BaseXMLContextRenderer(boolean sort, int parallelism) {
+        super(sort);
+        this.parallelism = Parallelism.check(parallelism);
     }
 
     protected BaseXMLContextRenderer(String location, E context) {
         super(location, context);
+        this.parallelism = 1;
     }
 
     protected BaseXMLContextRenderer(String location, E context, boolean sort) {
         super(location, context, sort);
+        this.parallelism = 1;
     }
 
-    protected static void renderString(TransformerHandler hd, AttributesImpl atts, final String tagName, final String tagValue) throws SAXException {
-        if (null != tagValue && 0 < tagValue.length()) {
-            hd.startElement("", "", tagName, atts);
-            hd.characters(tagValue.toCharArray(), 0, tagValue.length());
-            hd.endElement("", "", tagName);
-        }
+    protected BaseXMLContextRenderer(String location, E context, boolean sort, int parallelism) {
+        super(location, context, sort);
+        this.parallelism = Parallelism.check(parallelism);
     }
 
-    protected static void renderAttribute(AttributesImpl atts, String tag, String text) {
-        if (null != text) {
-            atts.addAttribute("", "", tag, "CDATA", text);
-        }
+    public int getParallelism() {
+        return parallelism;
     }
 
-    protected void process(E context, BufferedWriter out) throws IOException, ContextRendererException {
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener to report rendering phases to.
+     *
+     * @param metricsListener metrics listener, null to stop reporting
+     */
+    public void setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Starts measuring a rendering phase.
+     *
+     * @param phase phase name
+     * @return phase timer
+     */
+    protected PhaseTimer startPhase(String phase) {
+        return PhaseTimer.start(metricsListener, getClass().getSimpleName(), phase);
+    }
+
+    @Override
+    public void render(E context, String location) throws ContextRendererException {
         try {
-            StreamResult streamResult = new StreamResult(out);
-            SAXTransformerFactory tf = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
-            TransformerHandler hd = tf.newTransformerHandler();
-            Transformer serializer = hd.getTransformer();
-            serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            serializer.setOutputProperty(OutputKeys.INDENT, "yes");
-            serializer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            hd.setResult(streamResult);
-            hd.startDocument();
-            hd.startElement("", "", "context", new AttributesImpl());
-
-            if (null == context.getRoot()) {
-                throw new ContextRendererException("Cannot render context without root node");
+            PhaseTimer render = startPhase("render");
+            long progress = getProgress();
+            BufferedWriter out = CompressedStreams.openWriter(location);
+            try {
+                process(context, out);
+            } finally {
+                out.close();
+            }
+            if (null != metricsListener) {
+                render.stop(getProgress() - progress, new File(location).length());
             }
+        } catch (IOException e) {
+            throw new ContextRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
 
-            renderNode(hd, context.getRoot());
+    protected void process(E context, BufferedWriter out) throws IOException, ContextRendererException {
+        if (null == context.getRoot()) {
+            throw new ContextRendererException("Cannot render context without root node");
+        }
 
-            hd.endElement("", "", "context");
-            hd.endDocument();
-        } catch (SAXException | TransformerConfigurationException e) {
-            throw new ContextRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        XMLEmitter xml = new XMLEmitter(out);
+        startDocument(xml);
+        // counting walks the whole tree, only parallel rendering needs the count
+        renderTree(xml, context.getRoot(), 1 < parallelism ? context.nodesCount() : 0);
+        endDocument(xml);
+    }
+
+    /**
+     * Renders the document start, before the nodes.
+     *
+     * @param xml emitter
+     * @throws IOException IOException
+     */
+    protected void startDocument(XMLEmitter xml) throws IOException {
+        xml.startDocument();
+        xml.startElement("context");
+    }
+
+    /**
+     * Renders the document end, after the nodes.
+     *
+     * @param xml emitter
+     * @throws IOException IOException
+     */
+    protected void endDocument(XMLEmitter xml) throws IOException {
+        xml.endElement("context");
+        xml.endDocument();
+    }
+
+    /**
+     * Renders the tree, in parallel if the renderer is configured so and the tree is large enough.
+     *
+     * @param xml       emitter
+     * @param root      tree root
+     * @param nodeCount how many nodes the tree has, may be 0 if the renderer is sequential
+     * @throws IOException IOException
+     */
+    protected void renderTree(XMLEmitter xml, IBaseNode root, int nodeCount) throws IOException {
+        if (1 < parallelism && PARALLEL_THRESHOLD <= nodeCount) {
+            new ParallelRendering(xml, nodeCount).render(root);
+        } else {
+            renderNode(xml, root);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    protected void renderNode(TransformerHandler hd, IBaseNode curNode) throws SAXException {
-        if (Thread.currentThread().isInterrupted()) {
-            return;
+    protected void renderNode(XMLEmitter xml, IBaseNode curNode) throws IOException {
+        renderNode(xml, curNode, true);
+    }
+
+    /**
+     * Renders the subtree. Uses an explicit stack, so that the tree depth is not limited by the thread stack.
+     *
+     * @param xml            emitter
+     * @param root           subtree root
+     * @param reportProgress whether to report progress for each rendered node
+     * @return how many nodes are rendered
+     * @throws IOException IOException
+     */
+    private int renderNode(XMLEmitter xml, IBaseNode root, boolean reportProgress) throws IOException {
+        int result = 0;
+        NodeStack stack = new NodeStack(sort);
+        startNode(xml, root);
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            NodeStack.Frame frame = stack.peek();
+            if (frame.hasNextChild()) {
+                IBaseNode child = frame.nextChild();
+                startNode(xml, child);
+                stack.push(child);
+            } else {
+                endNode(xml, frame.getNode());
+                stack.pop();
+                result++;
+                if (reportProgress) {
+                    progress();
+                }
+            }
         }
+        return result;
+    }
 
-        // render current node
+    /**
+     * Renders the node before its children.
+     *
+     * @param xml     emitter
+     * @param curNode node
+     * @throws IOException IOException
+     */
+    protected void startNode(XMLEmitter xml, IBaseNode curNode) throws IOException {
         IBaseNodeData curNodeData = curNode.nodeData();
-        AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute("", "", "id", "CDATA", curNodeData.getId());
+        xml.startElement("node");
+        xml.attribute("id", curNodeData.getId());
         if (curNode.hasParent()) {
-            atts.addAttribute("", "", "parent-id", "CDATA", curNode.getParent().nodeData().getId());
+            xml.attribute("parent-id", curNode.getParent().nodeData().getId());
         }
-        renderNodeAttributes(curNode, atts);
-        hd.startElement("", "", "node", atts);
+        renderNodeAttributes(curNode, xml);
 
-        renderString(hd, new AttributesImpl(), "name", curNodeData.getName());
+        xml.element("name", curNodeData.getName());
 
-        renderNodeContents(curNode, hd);
+        renderNodeContents(curNode, xml);
 
         if (0 < curNode.getChildCount()) {
-            hd.startElement("", "", "children", new AttributesImpl());
-            Iterator<IBaseNode> children;
-            if (sort) {
-                ArrayList<IBaseNode> childrenList = new ArrayList<>(curNode.getChildren());
-                Collections.sort(childrenList, Node.NODE_NAME_COMPARATOR);
-                children = childrenList.iterator();
-            } else {
-                children = curNode.childrenIterator();
-            }
-            while (children.hasNext()) {
-                renderNode(hd, children.next());
-            }
-            hd.endElement("", "", "children");
+            xml.startElement("children");
         }
+    }
 
-        hd.endElement("", "", "node");
-        progress();
+    /**
+     * Renders the node after its children.
+     *
+     * @param xml     emitter
+     * @param curNode node
+     * @throws IOException IOException
+     */
+    protected void endNode(XMLEmitter xml, IBaseNode curNode) throws IOException {
+        if (0 < curNode.getChildCount()) {
+            xml.endElement("children");
+        }
+        xml.endElement("node");
     }
 
-    protected void renderNodeContents(IBaseNode curNode, TransformerHandler hd) throws SAXException {
+    protected void renderNodeContents(IBaseNode curNode, XMLEmitter xml) throws IOException {
     }
 
-    protected void renderNodeAttributes(IBaseNode curNode, AttributesImpl atts) {
+    /**
+     * Renders additional attributes of the node element.
+     *
+     * @param curNode node
+     * @param xml     emitter, positioned right after the node start tag
+     * @throws IOException IOException
+     */
+    protected void renderNodeAttributes(IBaseNode curNode, XMLEmitter xml) throws IOException {
     }
 
     public String getDescription() {
         return ILoader.XML_FILES;
     }
+
+    /**
+     * Rendered part of the document: either a buffer filled by the rendering thread or a subtree
+     * rendered by a worker.
+     */
+    private static class Part {
+        private final char[] text;
+        private final Future<Part> subtree;
+        private final int nodeCount;
+
+        private Part(char[] text, int nodeCount) {
+            this.text = text;
+            this.subtree = null;
+            this.nodeCount = nodeCount;
+        }
+
+        private Part(Future<Part> subtree) {
+            this.text = null;
+            this.subtree = subtree;
+            this.nodeCount = 0;
+        }
+    }
+
+    /**
+     * Renders the tree in parallel. The rendering thread walks the top of the tree, rendering the nodes
+     * of large subtrees itself and submitting small enough subtrees to workers. Parts are written
+     * in document order as they are ready, and the amount of parts waiting to be written is limited.
+     */
+    private class ParallelRendering {
+
+        private final XMLEmitter xml;
+        // the rendering thread renders here, to keep the order with subtrees
+        private final CharArrayWriter buffer = new CharArrayWriter();
+        private final XMLEmitter bufferXml;
+        private final int subtreeSize;
+        private final int maxPending = 2 * SUBTREES_PER_THREAD * parallelism;
+
+        private final Deque<Part> pending = new ArrayDeque<>();
+        private ExecutorService executor;
+        // sizes of the subtrees rendered by the rendering thread
+        private Map<IBaseNode, Integer> largeSubtrees;
+
+        private ParallelRendering(XMLEmitter xml, int nodeCount) {
+            this.xml = xml;
+            this.bufferXml = new XMLEmitter(buffer, xml.isIndent());
+            this.subtreeSize = Math.max(MIN_SUBTREE_SIZE, nodeCount / (SUBTREES_PER_THREAD * parallelism));
+        }
+
+        private void render(IBaseNode root) throws IOException {
+            xml.closeStartTag();
+            bufferXml.setDepth(xml.getDepth());
+            executor = Executors.newFixedThreadPool(parallelism);
+            try {
+                largeSubtrees = findLargeSubtrees(root);
+                renderTop(root);
+                addBuffer();
+                while (!pending.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                    writePart(pending.removeFirst());
+                }
+            } finally {
+                for (Part part : pending) {
+                    if (null != part.subtree) {
+                        part.subtree.cancel(true);
+                    }
+                }
+                executor.shutdownNow();
+            }
+        }
+
+        private void renderTop(IBaseNode root) throws IOException {
+            if (!largeSubtrees.containsKey(root)) {
+                submit(root);
+                return;
+            }
+
+            NodeStack stack = new NodeStack(sort);
+            startNode(bufferXml, root);
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+
+                NodeStack.Frame frame = stack.peek();
+                if (frame.hasNextChild()) {
+                    IBaseNode child = frame.nextChild();
+                    if (largeSubtrees.containsKey(child)) {
+                        startNode(bufferXml, child);
+                        stack.push(child);
+                    } else {
+                        submit(child);
+                    }
+                } else {
+                    endNode(bufferXml, frame.getNode());
+                    stack.pop();
+                    progress();
+                }
+            }
+        }
+
+        private void submit(final IBaseNode root) throws IOException {
+            bufferXml.closeStartTag();
+            addBuffer();
+            final int depth = bufferXml.getDepth();
+            final boolean indent = bufferXml.isIndent();
+            Future<Part> subtree = executor.submit(new Callable<Part>() {
+                @Override
+                public Part call() throws Exception {
+                    CharArrayWriter text = new CharArrayWriter();
+                    XMLEmitter subtreeXml = new XMLEmitter(text, indent);
+                    subtreeXml.setDepth(depth);
+                    int nodeCount = renderNode(subtreeXml, root, false);
+                    return new Part(text.toCharArray(), nodeCount);
+                }
+            });
+            pending.addLast(new Part(subtree));
+
+            // write finished parts and wait for the oldest one if too many are queued
+            while (!pending.isEmpty() && (null == pending.peekFirst().subtree || pending.peekFirst().subtree.isDone())) {
+                writePart(pending.removeFirst());
+            }
+            while (maxPending <= pending.size()) {
+                writePart(pending.removeFirst());
+            }
+        }
+
+        private void addBuffer() {
+            if (0 < buffer.size()) {
+                pending.addLast(new Part(buffer.toCharArray(), 0));
+                buffer.reset();
+            }
+        }
+
+        private void writePart(Part part) throws IOException {
+            Writer out = xml.getWriter();
+            if (null == part.subtree) {
+                out.write(part.text);
+            } else {
+                try {
+                    Part subtree = part.subtree.get();
+                    out.write(subtree.text);
+                    setProgress(getProgress() + subtree.nodeCount);
+                } catch (InterruptedException e) {
+                    // stop like the sequential rendering does
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause().getClass().getSimpleName() + ": " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        }
+
+        /**
+         * Finds subtrees larger than a subtree rendered by a worker, in one pass over the tree.
+         *
+         * @param root tree root
+         * @return subtree roots with subtree sizes
+         */
+        private Map<IBaseNode, Integer> findLargeSubtrees(IBaseNode root) {
+            Map<IBaseNode, Integer> result = new IdentityHashMap<>();
+            NodeStack stack = new NodeStack(false);
+            // sizes of the subtrees on the stack counted so far
+            int[] sizes = new int[32];
+            stack.push(root);
+            sizes[0] = 1;
+            while (!stack.isEmpty()) {
+                NodeStack.Frame frame = stack.peek();
+                if (frame.hasNextChild()) {
+                    stack.push(frame.nextChild());
+                    if (sizes.length < stack.size()) {
+                        sizes = Arrays.copyOf(sizes, 2 * sizes.length);
+                    }
+                    sizes[stack.size() - 1] = 1;
+                } else {
+                    int size = sizes[stack.size() - 1];
+                    if (subtreeSize < size) {
+                        result.put(frame.getNode(), size);
+                    }
+                    stack.pop();
+                    if (!stack.isEmpty()) {
+                        sizes[stack.size() - 1] += size;
+                    }
+                }
+            }
+            return result;
+        }
+    }
 }
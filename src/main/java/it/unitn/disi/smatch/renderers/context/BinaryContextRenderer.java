@@ -0,0 +1,213 @@
+package it.unitn.disi.smatch.renderers.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.data.trees.INodeData;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.io.SenseIds;
+import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.loaders.context.BinaryContextLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a context into the compact binary format read by {@link BinaryContextLoader}.
+ * See the loader for the description of the layout.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class BinaryContextRenderer extends AsyncTask<Void, INode> implements IContextRenderer, IAsyncContextRenderer {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryContextRenderer.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String location;
+    private final IContext context;
+
+    public BinaryContextRenderer() {
+        this(null, null);
+    }
+
+    public BinaryContextRenderer(String location, IContext context) {
+        this.location = location;
+        this.context = context;
+    }
+
+    @Override
+    public AsyncTask<Void, INode> asyncRender(IContext context, String location) {
+        return new BinaryContextRenderer(location, context);
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        render(context, location);
+        return null;
+    }
+
+    @Override
+    public void render(IContext context, String location) throws ContextRendererException {
+        try {
+            boolean complete;
+            OutputStream out = CompressedStreams.openOutputStream(location, BUFFER_SIZE);
+            try {
+                complete = process(context, out);
+            } finally {
+                out.close();
+            }
+            if (!complete) {
+                // a truncated file would look complete until loaded
+                if (!new File(location).delete()) {
+                    log.warn("Cannot delete incomplete context file: " + location);
+                }
+                throw new ContextRendererException("Interrupted while rendering " + location);
+            }
+        } catch (IOException e) {
+            throw new ContextRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the context into the stream. The stream is not closed.
+     *
+     * @param context context to write
+     * @param out     output stream
+     * @return false if interrupted, then the output is incomplete
+     * @throws IOException              IOException
+     * @throws ContextRendererException if the context has no root
+     */
+    protected boolean process(IContext context, OutputStream out) throws IOException, ContextRendererException {
+        if (null == context.getRoot()) {
+            throw new ContextRendererException("Cannot render context without root node");
+        }
+        setProgress(0);
+
+        // string -> string index + 1, kept per call for thread safety
+        Map<String, Integer> strings = new HashMap<>();
+        List<String> stringList = new ArrayList<>();
+
+        // collect nodes in pre-order, their parents and all strings
+        List<INode> nodes = new ArrayList<>();
+        int[] parents = new int[16];
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        int[] parentStack = new int[16];
+        nodeStack.push(context.getRoot());
+        parentStack[0] = 0;
+        while (!nodeStack.isEmpty()) {
+            INode node = nodeStack.pop();
+            int parent = parentStack[nodeStack.size()];
+            int index = nodes.size();
+            nodes.add(node);
+            if (parents.length == index) {
+                parents = Arrays.copyOf(parents, 2 * index);
+            }
+            parents[index] = parent;
+            collectStrings(node.nodeData(), strings, stringList);
+
+            int childCount = node.getChildCount();
+            if (parentStack.length < nodeStack.size() + childCount) {
+                parentStack = Arrays.copyOf(parentStack, 2 * (nodeStack.size() + childCount));
+            }
+            for (int i = childCount - 1; 0 <= i; i--) {
+                parentStack[nodeStack.size()] = index + 1;
+                nodeStack.push(node.getChildAt(i));
+            }
+        }
+
+        out.write(BinaryContextLoader.MAGIC);
+        writeInt(out, BinaryContextLoader.VERSION);
+        writeInt(out, stringList.size());
+        for (String s : stringList) {
+            byte[] bytes = s.getBytes(UTF8);
+            writeInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeInt(out, nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            INodeData nodeData = nodes.get(i).nodeData();
+            writeInt(out, parents[i]);
+            writeString(out, strings, nodeData.getId());
+            writeString(out, strings, nodeData.getName());
+            writeString(out, strings, nodeData.getLabelFormula());
+            writeString(out, strings, nodeData.getNodeFormula());
+            writeString(out, strings, nodeData.getProvenance());
+            out.write(nodeData.getIsPreprocessed() ? BinaryContextLoader.FLAG_PREPROCESSED : 0);
+
+            writeInt(out, nodeData.getConcepts().size());
+            for (IAtomicConceptOfLabel acol : nodeData.getConcepts()) {
+                writeInt(out, acol.getId());
+                writeString(out, strings, acol.getToken());
+                writeString(out, strings, acol.getLemma());
+                final int senseCount = SenseIds.getSenseCount(acol);
+                writeInt(out, senseCount);
+                for (int j = 0; j < senseCount; j++) {
+                    writeString(out, strings, SenseIds.getSenseId(acol, j));
+                }
+            }
+            progress();
+        }
+        return true;
+    }
+
+    private static void collectStrings(INodeData nodeData, Map<String, Integer> strings, List<String> stringList) {
+        addString(nodeData.getId(), strings, stringList);
+        addString(nodeData.getName(), strings, stringList);
+        addString(nodeData.getLabelFormula(), strings, stringList);
+        addString(nodeData.getNodeFormula(), strings, stringList);
+        addString(nodeData.getProvenance(), strings, stringList);
+        for (IAtomicConceptOfLabel acol : nodeData.getConcepts()) {
+            addString(acol.getToken(), strings, stringList);
+            addString(acol.getLemma(), strings, stringList);
+            for (int i = SenseIds.getSenseCount(acol) - 1; i >= 0; i--) {
+                addString(SenseIds.getSenseId(acol, i), strings, stringList);
+            }
+        }
+    }
+
+    private static void addString(String s, Map<String, Integer> strings, List<String> stringList) {
+        if (null != s && !strings.containsKey(s)) {
+            stringList.add(s);
+            strings.put(s, stringList.size());
+        }
+    }
+
+    private static void writeString(OutputStream out, Map<String, Integer> strings, String s) throws IOException {
+        writeInt(out, null == s ? 0 : strings.get(s));
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        while (0 != (value & ~0x7F)) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public String getDescription() {
+        return BinaryContextLoader.BINARY_FILES;
+    }
+
+    public ILoader.LoaderType getType() {
+        return ILoader.LoaderType.FILE;
+    }
+}
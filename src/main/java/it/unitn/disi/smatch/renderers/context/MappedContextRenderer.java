@@ -0,0 +1,319 @@
+package it.unitn.disi.smatch.renderers.context;
+
+import it.unitn.disi.smatch.async.AsyncTask;
+import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.data.trees.INodeData;
+import it.unitn.disi.smatch.io.SenseIds;
+import it.unitn.disi.smatch.loaders.ILoader;
+import it.unitn.disi.smatch.loaders.context.MappedContextLoader;
+import it.unitn.disi.smatch.loaders.context.MappedContextStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a context into a precompiled file suitable for memory mapping by {@link MappedContextLoader}.
+ * See {@link MappedContextStore} for the description of the layout.
+ * <p/>
+ * Names, tokens, lemmas and sense ids are written once per distinct value.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class MappedContextRenderer extends AsyncTask<Void, INode> implements IContextRenderer, IAsyncContextRenderer {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedContextRenderer.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String location;
+    private final IContext context;
+
+    public MappedContextRenderer() {
+        this(null, null);
+    }
+
+    public MappedContextRenderer(String location, IContext context) {
+        this.location = location;
+        this.context = context;
+    }
+
+    @Override
+    public AsyncTask<Void, INode> asyncRender(IContext context, String location) {
+        return new MappedContextRenderer(location, context);
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        render(context, location);
+        return null;
+    }
+
+    @Override
+    public void render(IContext context, String location) throws ContextRendererException {
+        if (null == context.getRoot()) {
+            throw new ContextRendererException("Cannot render context without root node");
+        }
+        try {
+            boolean complete;
+            RandomAccessFile file = new RandomAccessFile(location, "rw");
+            try {
+                file.setLength(0);
+                complete = process(context, file.getChannel());
+            } finally {
+                file.close();
+            }
+            if (!complete) {
+                // a store without header would be rejected or misread by the loader
+                if (!new File(location).delete()) {
+                    log.warn("Cannot delete incomplete context file: " + location);
+                }
+                throw new ContextRendererException("Interrupted while rendering " + location);
+            }
+        } catch (IOException e) {
+            throw new ContextRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the context into the channel.
+     *
+     * @param context context to write
+     * @param channel file channel
+     * @return false if interrupted, then the header is not written
+     * @throws IOException IOException
+     */
+    private boolean process(IContext context, FileChannel channel) throws IOException {
+        setProgress(0);
+        // string -> offset of already written repetitive strings, kept per call for thread safety
+        Map<String, Long> strings = new HashMap<>();
+        long nodeCount = countNodes(context.getRoot());
+        long nodesOffset = MappedContextStore.HEADER_SIZE;
+        long dataOffset = nodesOffset + nodeCount * MappedContextStore.RECORD_SIZE;
+
+        ChannelWriter nodes = new ChannelWriter(channel, nodesOffset);
+        ChannelWriter data = new ChannelWriter(channel, dataOffset);
+
+        // pre-order traversal keeping parent indexes on a parallel stack
+        int index = 0;
+        Deque<INode> nodeStack = new ArrayDeque<>();
+        int[] parentStack = new int[16];
+        nodeStack.push(context.getRoot());
+        parentStack[0] = 0;
+        while (!nodeStack.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            INode node = nodeStack.pop();
+            int parent = parentStack[nodeStack.size()];
+            INodeData nodeData = node.nodeData();
+
+            long id = writeString(data, strings, nodeData.getId(), false);
+            long name = writeString(data, strings, nodeData.getName(), true);
+            long labelFormula = writeString(data, strings, nodeData.getLabelFormula(), false);
+            long nodeFormula = writeString(data, strings, nodeData.getNodeFormula(), false);
+            long provenance = writeString(data, strings, nodeData.getProvenance(), false);
+            long concepts = writeConcepts(data, strings, nodeData.getConcepts());
+
+            nodes.putInt(parent);
+            nodes.putInt(nodeData.getIsPreprocessed() ? MappedContextStore.FLAG_PREPROCESSED : 0);
+            nodes.putLong(id);
+            nodes.putLong(name);
+            nodes.putLong(labelFormula);
+            nodes.putLong(nodeFormula);
+            nodes.putLong(provenance);
+            nodes.putLong(concepts);
+            nodes.putLong(0);
+
+            int childCount = node.getChildCount();
+            if (parentStack.length < nodeStack.size() + childCount) {
+                parentStack = Arrays.copyOf(parentStack, 2 * (nodeStack.size() + childCount));
+            }
+            for (int i = childCount - 1; 0 <= i; i--) {
+                parentStack[nodeStack.size()] = index + 1;
+                nodeStack.push(node.getChildAt(i));
+            }
+            index++;
+            progress();
+        }
+        nodes.flush();
+        data.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(MappedContextStore.HEADER_SIZE);
+        header.put(MappedContextStore.MAGIC);
+        header.putInt(MappedContextStore.VERSION);
+        header.putLong(nodeCount);
+        header.putLong(nodesOffset);
+        header.putLong(dataOffset);
+        header.clear();
+        write(channel, header, 0);
+        return true;
+    }
+
+    private static long countNodes(INode root) {
+        long result = 0;
+        Deque<INode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            INode node = stack.pop();
+            result++;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                stack.push(node.getChildAt(i));
+            }
+        }
+        return result;
+    }
+
+    private static long writeString(ChannelWriter data, Map<String, Long> strings, String s, boolean repetitive) throws IOException {
+        if (null == s) {
+            return MappedContextStore.NULL;
+        }
+        Long result = repetitive ? strings.get(s) : null;
+        if (null == result) {
+            byte[] bytes = s.getBytes(UTF8);
+            result = data.reserve(4 + bytes.length);
+            data.putInt(bytes.length);
+            data.put(bytes);
+            if (repetitive) {
+                strings.put(s, result);
+            }
+        }
+        return result;
+    }
+
+    private static long writeConcepts(ChannelWriter data, Map<String, Long> strings, List<IAtomicConceptOfLabel> concepts) throws IOException {
+        if (concepts.isEmpty()) {
+            return MappedContextStore.NULL;
+        }
+        // strings go first, so that the concepts are written in one piece
+        int size = 4;
+        long[] refs = new long[2 * concepts.size()];
+        int i = 0;
+        for (IAtomicConceptOfLabel acol : concepts) {
+            refs[i++] = writeString(data, strings, acol.getToken(), true);
+            refs[i++] = writeString(data, strings, acol.getLemma(), true);
+            size += 24 + 8 * SenseIds.getSenseCount(acol);
+        }
+        long[] senses = new long[(size - 4 - 24 * concepts.size()) / 8];
+        int j = 0;
+        for (IAtomicConceptOfLabel acol : concepts) {
+            final int senseCount = SenseIds.getSenseCount(acol);
+            for (int k = 0; k < senseCount; k++) {
+                senses[j++] = writeString(data, strings, SenseIds.getSenseId(acol, k), true);
+            }
+        }
+
+        long result = data.reserve(size);
+        data.putInt(concepts.size());
+        i = 0;
+        j = 0;
+        for (IAtomicConceptOfLabel acol : concepts) {
+            data.putInt(acol.getId());
+            data.putLong(refs[i++]);
+            data.putLong(refs[i++]);
+            final int senseCount = SenseIds.getSenseCount(acol);
+            data.putInt(senseCount);
+            for (int k = 0; k < senseCount; k++) {
+                data.putLong(senses[j++]);
+            }
+        }
+        return result;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Buffered sequential writer into a region of a file.
+     */
+    private static class ChannelWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        // file position of the buffer start
+        private long position;
+
+        private ChannelWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        /**
+         * Makes sure an item of the given size does not cross a segment boundary.
+         *
+         * @param size item size
+         * @return file offset of the item
+         * @throws IOException IOException
+         */
+        long reserve(int size) throws IOException {
+            long offset = position + buffer.position();
+            long segmentEnd = (offset | (MappedContextStore.SEGMENT_SIZE - 1)) + 1;
+            if (segmentEnd < offset + size) {
+                flush();
+                position = segmentEnd;
+                offset = segmentEnd;
+            }
+            return offset;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            write(channel, buffer, position);
+            position += length;
+            buffer.clear();
+        }
+
+        private void ensure(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+    }
+
+    public String getDescription() {
+        return MappedContextLoader.MAPPED_FILES;
+    }
+
+    public ILoader.LoaderType getType() {
+        return ILoader.LoaderType.FILE;
+    }
+}
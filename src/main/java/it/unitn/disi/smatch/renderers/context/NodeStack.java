@@ -0,0 +1,119 @@
+package it.unitn.disi.smatch.renderers.context;
+
+import it.unitn.disi.smatch.data.trees.IBaseNode;
+import it.unitn.disi.smatch.data.trees.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Explicit stack for depth first traversal of trees by renderers, so that the tree depth is not limited
+ * by the thread stack. Each frame keeps a node and the position among its children. Popped frames are kept
+ * and reused together with their child lists, therefore, once the stack has grown to the tree depth,
+ * the traversal does not allocate per node. Not thread safe.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+final class NodeStack {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final boolean sort;
+    private Frame[] frames = new Frame[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param sort whether to traverse children sorted by name
+     */
+    NodeStack(boolean sort) {
+        this.sort = sort;
+    }
+
+    /**
+     * Pushes the node, positioning before its first child.
+     *
+     * @param node node
+     */
+    void push(IBaseNode node) {
+        if (size == frames.length) {
+            frames = Arrays.copyOf(frames, 2 * size);
+        }
+        Frame frame = frames[size];
+        if (null == frame) {
+            frame = new Frame();
+            frames[size] = frame;
+        }
+        frame.set(node, sort);
+        size++;
+    }
+
+    /**
+     * Returns the top frame.
+     *
+     * @return the top frame
+     */
+    Frame peek() {
+        return frames[size - 1];
+    }
+
+    /**
+     * Pops the top frame, which is kept for reuse.
+     */
+    void pop() {
+        frames[--size].clear();
+    }
+
+    boolean isEmpty() {
+        return 0 == size;
+    }
+
+    /**
+     * Returns the amount of frames, that is the depth of the top node counting from 1.
+     *
+     * @return the amount of frames
+     */
+    int size() {
+        return size;
+    }
+
+    static final class Frame {
+        private IBaseNode node;
+        // children in name order, if sorted
+        private final ArrayList<IBaseNode> sorted = new ArrayList<>();
+        private boolean isSorted;
+        private int next;
+
+        IBaseNode getNode() {
+            return node;
+        }
+
+        boolean hasNextChild() {
+            return next < node.getChildCount();
+        }
+
+        IBaseNode nextChild() {
+            return isSorted ? sorted.get(next++) : node.getChildAt(next++);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void set(IBaseNode node, boolean sort) {
+            this.node = node;
+            this.next = 0;
+            final int childCount = node.getChildCount();
+            isSorted = sort && 1 < childCount;
+            if (isSorted) {
+                for (int i = 0; i < childCount; i++) {
+                    sorted.add(node.getChildAt(i));
+                }
+                Collections.sort(sorted, Node.NODE_NAME_COMPARATOR);
+            }
+        }
+
+        private void clear() {
+            node = null;
+            // keeps the capacity
+            sorted.clear();
+        }
+    }
+}
@@ -2,15 +2,14 @@ package it.unitn.disi.smatch.renderers.context;
 
 import it.unitn.disi.smatch.async.AsyncTask;
 import it.unitn.disi.smatch.data.ling.IAtomicConceptOfLabel;
-import it.unitn.disi.smatch.data.ling.ISense;
 import it.unitn.disi.smatch.data.trees.IBaseNode;
 import it.unitn.disi.smatch.data.trees.IContext;
 import it.unitn.disi.smatch.data.trees.INode;
 import it.unitn.disi.smatch.data.trees.INodeData;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.AttributesImpl;
+import it.unitn.disi.smatch.io.SenseIds;
+import it.unitn.disi.smatch.renderers.XMLEmitter;
 
-import javax.xml.transform.sax.TransformerHandler;
+import java.io.IOException;
 
 /**
  * Renders a context into an XML file.
@@ -29,6 +28,14 @@ public class SimpleXMLContextRenderer extends BaseXMLContextRenderer<IContext, I
         super(sort);
     }
 
+    /**
+     * @param sort        whether to sort children by name
+     * @param parallelism how many threads render subtrees
+     */
+    public SimpleXMLContextRenderer(boolean sort, int parallelism) {
+        super(sort, parallelism);
+    }
+
     public SimpleXMLContextRenderer(String location, IContext context) {
         super(location, context);
     }
@@ -37,47 +44,53 @@ public class SimpleXMLContextRenderer extends BaseXMLContextRenderer<IContext, I
         super(location, context, sort);
     }
 
-    protected void renderNodeAttributes(IBaseNode curNode, AttributesImpl atts) {
+    public SimpleXMLContextRenderer(String location, IContext context, boolean sort, int parallelism) {
+        super(location, context, sort, parallelism);
+    }
+
+    protected void renderNodeAttributes(IBaseNode curNode, XMLEmitter xml) throws IOException {
         INodeData curNodeData = ((INode) curNode).nodeData();
         if (curNodeData.getIsPreprocessed()) {
-            atts.addAttribute("", "", "preprocessed", "CDATA", preprocessedFlag);
+            xml.attribute("preprocessed", preprocessedFlag);
         }
     }
 
-    protected void renderNodeContents(IBaseNode curNode, TransformerHandler hd) throws SAXException {
+    protected void renderNodeContents(IBaseNode curNode, XMLEmitter xml) throws IOException {
         INodeData curNodeData = ((INode) curNode).nodeData();
-        renderString(hd, new AttributesImpl(), "label-formula", curNodeData.getLabelFormula());
-        renderString(hd, new AttributesImpl(), "node-formula", curNodeData.getNodeFormula());
-        renderString(hd, new AttributesImpl(), "provenance", curNodeData.getProvenance());
+        xml.element("label-formula", curNodeData.getLabelFormula());
+        xml.element("node-formula", curNodeData.getNodeFormula());
+        xml.element("provenance", curNodeData.getProvenance());
 
         // senses
         if (!curNodeData.getConcepts().isEmpty()) {
-            hd.startElement("", "", "tokens", new AttributesImpl());
+            xml.startElement("tokens");
             for (IAtomicConceptOfLabel acol : curNodeData.getConcepts()) {
-                AttributesImpl atts = new AttributesImpl();
-                atts.addAttribute("", "", "id", "CDATA", Integer.toString(acol.getId()));
-                hd.startElement("", "", "token", atts);
-
-                renderString(hd, new AttributesImpl(), "text", acol.getToken());
-                renderString(hd, new AttributesImpl(), "lemma", acol.getLemma());
-
-                hd.startElement("", "", "senses", new AttributesImpl());
-                for (ISense sense : acol.getSenses()) {
-                    atts = new AttributesImpl();
-                    atts.addAttribute("", "", "id", "CDATA", sense.getId());
-                    hd.startElement("", "", "sense", atts);
-                    hd.endElement("", "", "sense");
+                xml.startElement("token");
+                xml.attribute("id", Integer.toString(acol.getId()));
+
+                xml.element("text", acol.getToken());
+                xml.element("lemma", acol.getLemma());
+
+                xml.startElement("senses");
+                // lazy senses are written without being created
+                final int senseCount = SenseIds.getSenseCount(acol);
+                for (int i = 0; i < senseCount; i++) {
+                    xml.startElement("sense");
+                    xml.attribute("id", SenseIds.getSenseId(acol, i));
+                    xml.endElement("sense");
                 }
-                hd.endElement("", "", "senses");
+                xml.endElement("senses");
 
-                hd.endElement("", "", "token");
+                xml.endElement("token");
             }
-            hd.endElement("", "", "tokens");
+            xml.endElement("tokens");
         }
     }
 
     @Override
     public AsyncTask<Void, INode> asyncRender(IContext context, String location) {
-        return new SimpleXMLContextRenderer(location, context, sort);
+        SimpleXMLContextRenderer result = new SimpleXMLContextRenderer(location, context, sort, parallelism);
+        result.setMetricsListener(metricsListener);
+        return result;
     }
 }
\ No newline at end of file
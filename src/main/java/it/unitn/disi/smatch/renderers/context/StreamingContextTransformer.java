@@ -0,0 +1,89 @@
+package it.unitn.disi.smatch.renderers.context;
+
+import it.unitn.disi.smatch.data.trees.IContext;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.loaders.context.ContextLoaderException;
+import it.unitn.disi.smatch.loaders.context.IContextNodeHandler;
+import it.unitn.disi.smatch.loaders.context.SimpleXMLContextLoader;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
+import it.unitn.disi.smatch.renderers.XMLEmitter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts a SimpleXML context into the format of an XML renderer, for example, OWL, passing nodes from
+ * the loader to the renderer as they are read, without loading the whole context. Memory is bounded by
+ * the depth of the tree, therefore contexts larger than the heap can be converted.
+ * <p/>
+ * Sorting children needs all of them at once, therefore sorting renderers cannot be used.
+ * Senses are passed as ids, no oracle is needed. Not thread safe.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public class StreamingContextTransformer implements IContextNodeHandler {
+
+    private final SimpleXMLContextLoader loader;
+    private final BaseXMLContextRenderer<IContext, INode> renderer;
+
+    // output of the current transformation
+    private XMLEmitter xml;
+    private long nodeCount;
+
+    /**
+     * @param loader   loader to read the source with
+     * @param renderer renderer to write the target with, should not sort
+     */
+    public StreamingContextTransformer(SimpleXMLContextLoader loader, BaseXMLContextRenderer<IContext, INode> renderer) {
+        if (renderer.sort) {
+            throw new IllegalArgumentException("Sorting renderers cannot render streamed nodes");
+        }
+        this.loader = loader;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Converts the context from the source into the target.
+     *
+     * @param source location of the context in SimpleXML format
+     * @param target location to write the context to
+     * @return how many nodes are converted, or -1, if interrupted, then the target is incomplete
+     * @throws ContextLoaderException   ContextLoaderException
+     * @throws ContextRendererException ContextRendererException
+     */
+    public long transform(String source, String target) throws ContextLoaderException, ContextRendererException {
+        try {
+            PhaseTimer transform = renderer.startPhase("transform");
+            nodeCount = 0;
+            BufferedWriter out = CompressedStreams.openWriter(target);
+            try {
+                xml = new XMLEmitter(out);
+                renderer.startDocument(xml);
+                if (!loader.stream(source, this)) {
+                    return -1;
+                }
+                renderer.endDocument(xml);
+            } finally {
+                xml = null;
+                out.close();
+            }
+            transform.stop(nodeCount, new File(target).length());
+            return nodeCount;
+        } catch (IOException e) {
+            throw new ContextRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void startNode(INode node) throws IOException {
+        renderer.startNode(xml, node);
+    }
+
+    @Override
+    public void endNode(INode node) throws IOException {
+        renderer.endNode(xml, node);
+        nodeCount++;
+    }
+}
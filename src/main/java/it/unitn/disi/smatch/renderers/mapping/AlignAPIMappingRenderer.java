@@ -4,16 +4,8 @@ import it.unitn.disi.smatch.data.mappings.IContextMapping;
 import it.unitn.disi.smatch.data.mappings.IMappingElement;
 import it.unitn.disi.smatch.data.trees.INode;
 import it.unitn.disi.smatch.loaders.ILoader;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.AttributesImpl;
-
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.sax.SAXTransformerFactory;
-import javax.xml.transform.sax.TransformerHandler;
-import javax.xml.transform.stream.StreamResult;
-import java.io.BufferedWriter;
+import it.unitn.disi.smatch.renderers.XMLEmitter;
+
 import java.io.IOException;
 
 /**
@@ -26,7 +18,7 @@ import java.io.IOException;
  *
  * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
  */
-public class AlignAPIMappingRenderer extends BaseFileMappingRenderer implements IMappingRenderer {
+public class AlignAPIMappingRenderer extends BaseXMLMappingRenderer implements IMappingRenderer {
 
     private final String onto1URI;
     private final String onto2URI;
@@ -53,80 +45,52 @@ public class AlignAPIMappingRenderer extends BaseFileMappingRenderer implements
     }
 
     @Override
-    protected void process(IContextMapping<INode> mapping, BufferedWriter out) throws IOException, MappingRendererException {
-        try {
-            StreamResult streamResult = new StreamResult(out);
-            SAXTransformerFactory tf = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
-            TransformerHandler hd = tf.newTransformerHandler();
-            Transformer serializer = hd.getTransformer();
-            serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            serializer.setOutputProperty(OutputKeys.INDENT, "yes");
-            serializer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-
-            hd.setResult(streamResult);
-            hd.startDocument();
-            final String base = "http://knowledgeweb.semanticweb.org/heterogeneity/alignment#";
-            hd.startPrefixMapping("", base);
-            hd.endPrefixMapping("");
-            hd.startPrefixMapping("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#");
-            hd.endPrefixMapping("rdf");
-            hd.startPrefixMapping("xsd", "http://www.w3.org/2001/XMLSchema#");
-            hd.endPrefixMapping("xsd");
-            hd.startPrefixMapping("align", base);
-            hd.endPrefixMapping("align");
-
-            AttributesImpl atts = new AttributesImpl();
-            hd.startElement("", "", "rdf:RDF", atts);
-
-            hd.startElement("", "", "Alignment", new AttributesImpl());
-            renderString(hd, new AttributesImpl(), "xml", "yes");
-            renderString(hd, new AttributesImpl(), "level", "0");
-            renderString(hd, new AttributesImpl(), "type", "**");
-
-            renderOntology(hd, "1", onto1URI, onto1Location);
-            renderOntology(hd, "2", onto2URI, onto2Location);
-
-            for (IMappingElement<INode> mappingElement : mapping) {
-                if (Thread.currentThread().isInterrupted()) {
-                    break;
-                }
-
-                hd.startElement("", "", "map", new AttributesImpl());
-                hd.startElement("", "", "Cell", new AttributesImpl());
-
-                atts = new AttributesImpl();
-                atts.addAttribute("", "", "rdf:resource", "CDATA", onto1URI + "#" + mappingElement.getSource().nodeData().getId());
-                hd.startElement("", "", "entity1", atts);
-                hd.endElement("", "", "entity1");
-                atts = new AttributesImpl();
-
-                atts.addAttribute("", "", "rdf:resource", "CDATA", onto2URI + "#" + mappingElement.getTarget().nodeData().getId());
-                hd.startElement("", "", "entity2", atts);
-                hd.endElement("", "", "entity2");
-                char relation = mappingElement.getRelation();
-
-                hd.startElement("", "", "relation", new AttributesImpl());
-                hd.characters(new char[]{relation}, 0, 1);
-                hd.endElement("", "", "relation");
-
-                atts = new AttributesImpl();
-                atts.addAttribute("", "", "rdf:datatype", "CDATA", "http://www.w3.org/2001/XMLSchema#float");
-                hd.startElement("", "", "measure", atts);
-                hd.characters(MEASURE.toCharArray(), 0, MEASURE.length());
-                hd.endElement("", "", "measure");
-
-                hd.endElement("", "", "Cell");
-                hd.endElement("", "", "map");
-
-                progress();
-            }//for
-
-            hd.endElement("", "", "Alignment");
-            hd.endElement("", "", "rdf:RDF");
-            hd.endDocument();
-        } catch (SAXException | TransformerConfigurationException e) {
-            throw new MappingRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
-        }
+    protected void renderHeader(XMLEmitter xml, double similarity) throws IOException {
+        final String base = "http://knowledgeweb.semanticweb.org/heterogeneity/alignment#";
+        xml.startElement("rdf:RDF");
+        xml.attribute("xmlns", base);
+        xml.attribute("xmlns:rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#");
+        xml.attribute("xmlns:xsd", "http://www.w3.org/2001/XMLSchema#");
+        xml.attribute("xmlns:align", base);
+
+        xml.startElement("Alignment");
+        xml.element("xml", "yes");
+        xml.element("level", "0");
+        xml.element("type", "**");
+
+        renderOntology(xml, "1", onto1URI, onto1Location);
+        renderOntology(xml, "2", onto2URI, onto2Location);
+    }
+
+    @Override
+    protected void renderElement(XMLEmitter xml, IMappingElement<INode> mappingElement) throws IOException {
+        xml.startElement("map");
+        xml.startElement("Cell");
+
+        xml.startElement("entity1");
+        xml.attribute("rdf:resource", onto1URI + "#" + mappingElement.getSource().nodeData().getId());
+        xml.endElement("entity1");
+
+        xml.startElement("entity2");
+        xml.attribute("rdf:resource", onto2URI + "#" + mappingElement.getTarget().nodeData().getId());
+        xml.endElement("entity2");
+        char relation = mappingElement.getRelation();
+
+        xml.element("relation", Character.toString(relation));
+
+        xml.startElement("measure");
+        xml.attribute("rdf:datatype", "http://www.w3.org/2001/XMLSchema#float");
+        xml.characters(MEASURE);
+        xml.endElement("measure");
+
+        xml.endElement("Cell");
+        xml.endElement("map");
+    }
+
+    @Override
+    protected void renderFooter(XMLEmitter xml) throws IOException {
+        xml.endElement("Alignment");
+        xml.endElement("rdf:RDF");
     }
 
     public String getDescription() {
@@ -137,29 +101,18 @@ public class AlignAPIMappingRenderer extends BaseFileMappingRenderer implements
         return ILoader.LoaderType.FILE;
     }
 
-    private static void renderOntology(TransformerHandler hd, String index, String URI, String location) throws SAXException {
-        hd.startElement("", "", "onto" + index, new AttributesImpl());
-        AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute("", "", "rdf:about", "CDATA", URI);
-        hd.startElement("", "", "Ontology", atts);
-        renderString(hd, new AttributesImpl(), "location", location);
-        hd.startElement("", "", "formalism", new AttributesImpl());
-        atts = new AttributesImpl();
-        atts.addAttribute("", "", "align:name", "CDATA", "OWL2.0");
-        atts.addAttribute("", "", "align:uri", "CDATA", "http://www.w3.org/2002/07/owl#");
-        hd.startElement("", "", "Formalism", atts);
-        hd.endElement("", "", "Formalism");
-        hd.endElement("", "", "formalism");
-        hd.endElement("", "", "Ontology");
-        hd.endElement("", "", "onto" + index);
-
-    }
-
-    private static void renderString(TransformerHandler hd, AttributesImpl atts, final String tagName, final String tagValue) throws SAXException {
-        if (null != tagValue && 0 < tagValue.length()) {
-            hd.startElement("", "", tagName, atts);
-            hd.characters(tagValue.toCharArray(), 0, tagValue.length());
-            hd.endElement("", "", tagName);
-        }
+    private static void renderOntology(XMLEmitter xml, String index, String URI, String location) throws IOException {
+        xml.startElement("onto" + index);
+        xml.startElement("Ontology");
+        xml.attribute("rdf:about", URI);
+        xml.element("location", location);
+        xml.startElement("formalism");
+        xml.startElement("Formalism");
+        xml.attribute("align:name", "OWL2.0");
+        xml.attribute("align:uri", "http://www.w3.org/2002/07/owl#");
+        xml.endElement("Formalism");
+        xml.endElement("formalism");
+        xml.endElement("Ontology");
+        xml.endElement("onto" + index);
     }
-}
\ No newline at end of file
+}
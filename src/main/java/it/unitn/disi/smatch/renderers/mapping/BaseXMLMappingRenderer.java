@@ -0,0 +1,180 @@
+package it.unitn.disi.smatch.renderers.mapping;
+
+import it.unitn.disi.smatch.data.mappings.IContextMapping;
+import it.unitn.disi.smatch.data.mappings.IMappingElement;
+import it.unitn.disi.smatch.data.trees.INode;
+import it.unitn.disi.smatch.io.CompressedStreams;
+import it.unitn.disi.smatch.metrics.IMetricsListener;
+import it.unitn.disi.smatch.metrics.PhaseTimer;
+import it.unitn.disi.smatch.renderers.XMLEmitter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Base renderer for XML mapping formats. Renders a document as a header, a sequence of mapping elements
+ * and a footer, which allows rendering whole mappings as well as streaming them in batches.
+ * Files with names ending with .gz are compressed, see {@link CompressedStreams}.
+ * Rendering of whole mappings is reported to the metrics listener, if one is set.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public abstract class BaseXMLMappingRenderer extends BaseFileMappingRenderer implements IStreamingMappingRenderer {
+
+    protected IMetricsListener metricsListener;
+
+    protected BaseXMLMappingRenderer(String location, IContextMapping<INode> mapping) {
+        super(location, mapping);
+    }
+
+    public IMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the listener to report rendering phases to.
+     *
+     * @param metricsListener metrics listener, null to stop reporting
+     */
+    public void setMetricsListener(IMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Starts measuring a rendering phase.
+     *
+     * @param phase phase name
+     * @return phase timer
+     */
+    protected PhaseTimer startPhase(String phase) {
+        return PhaseTimer.start(metricsListener, getClass().getSimpleName(), phase);
+    }
+
+    @Override
+    public void render(IContextMapping<INode> mapping, String location) throws MappingRendererException {
+        try {
+            PhaseTimer render = startPhase("render");
+            long progress = getProgress();
+            BufferedWriter out = CompressedStreams.openWriter(location);
+            try {
+                process(mapping, out);
+            } finally {
+                out.close();
+            }
+            if (null != metricsListener) {
+                render.stop(getProgress() - progress, new File(location).length());
+            }
+        } catch (IOException e) {
+            throw new MappingRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void process(IContextMapping<INode> mapping, BufferedWriter out) throws IOException, MappingRendererException {
+        Session session = new Session(out, mapping.getSimilarity(), false);
+        session.write(mapping);
+        session.close();
+    }
+
+    @Override
+    public IMappingRendererSession open(String location, double similarity) throws MappingRendererException {
+        try {
+            BufferedWriter out = CompressedStreams.openWriter(location);
+            try {
+                return new Session(out, similarity, true);
+            } catch (MappingRendererException | RuntimeException e) {
+                out.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new MappingRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Renders the beginning of the document.
+     *
+     * @param xml        emitter
+     * @param similarity mapping similarity
+     * @throws IOException IOException
+     */
+    protected abstract void renderHeader(XMLEmitter xml, double similarity) throws IOException;
+
+    /**
+     * Renders one mapping element.
+     *
+     * @param xml            emitter
+     * @param mappingElement mapping element
+     * @throws IOException IOException
+     */
+    protected abstract void renderElement(XMLEmitter xml, IMappingElement<INode> mappingElement) throws IOException;
+
+    /**
+     * Renders the end of the document.
+     *
+     * @param xml emitter
+     * @throws IOException IOException
+     */
+    protected abstract void renderFooter(XMLEmitter xml) throws IOException;
+
+    private class Session implements IMappingRendererSession {
+
+        private final Writer out;
+        private final boolean closeOut;
+        private final XMLEmitter xml;
+        private boolean closed;
+
+        private Session(Writer out, double similarity, boolean closeOut) throws MappingRendererException {
+            this.out = out;
+            this.closeOut = closeOut;
+            xml = new XMLEmitter(out);
+            try {
+                xml.startDocument();
+                renderHeader(xml, similarity);
+            } catch (IOException e) {
+                throw new MappingRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void write(Iterable<? extends IMappingElement<INode>> elements) throws MappingRendererException {
+            if (closed) {
+                throw new MappingRendererException("Rendering session is closed");
+            }
+            try {
+                for (IMappingElement<INode> mappingElement : elements) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    renderElement(xml, mappingElement);
+                    progress();
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new MappingRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() throws MappingRendererException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                try {
+                    renderFooter(xml);
+                    xml.endDocument();
+                } finally {
+                    if (closeOut) {
+                        out.close();
+                    }
+                }
+            } catch (IOException e) {
+                throw new MappingRendererException(e.getClass().getSimpleName() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
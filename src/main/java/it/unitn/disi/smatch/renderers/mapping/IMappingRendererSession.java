@@ -0,0 +1,30 @@
+package it.unitn.disi.smatch.renderers.mapping;
+
+import it.unitn.disi.smatch.data.mappings.IMappingElement;
+import it.unitn.disi.smatch.data.trees.INode;
+
+/**
+ * An open rendering of a mapping, which receives mapping elements in batches and writes each batch
+ * right away. Allows rendering mappings while they are still being produced, without keeping them
+ * in memory.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IMappingRendererSession extends AutoCloseable {
+
+    /**
+     * Writes a batch of mapping elements.
+     *
+     * @param elements mapping elements
+     * @throws MappingRendererException MappingRendererException
+     */
+    void write(Iterable<? extends IMappingElement<INode>> elements) throws MappingRendererException;
+
+    /**
+     * Finishes the document and closes the output.
+     *
+     * @throws MappingRendererException MappingRendererException
+     */
+    @Override
+    void close() throws MappingRendererException;
+}
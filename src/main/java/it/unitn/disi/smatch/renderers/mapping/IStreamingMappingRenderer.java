@@ -0,0 +1,19 @@
+package it.unitn.disi.smatch.renderers.mapping;
+
+/**
+ * Renderer which can write a mapping incrementally, see {@link IMappingRendererSession}.
+ *
+ * @author <a rel="author" href="http://autayeu.com/">Aliaksandr Autayeu</a>
+ */
+public interface IStreamingMappingRenderer extends IMappingRenderer {
+
+    /**
+     * Opens a rendering session.
+     *
+     * @param location   output location
+     * @param similarity mapping similarity, for the formats which include it in the header
+     * @return rendering session
+     * @throws MappingRendererException MappingRendererException
+     */
+    IMappingRendererSession open(String location, double similarity) throws MappingRendererException;
+}